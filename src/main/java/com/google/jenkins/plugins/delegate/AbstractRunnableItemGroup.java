@@ -34,13 +34,10 @@ import org.kohsuke.stapler.interceptor.RequirePOST;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static hudson.model.ItemGroupMixIn.KEYED_BY_NAME;
-import static hudson.model.ItemGroupMixIn.loadChildren;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
 
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -59,6 +56,7 @@ import hudson.model.ViewGroupMixIn;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.BuildWrappers;
 import hudson.tasks.Publisher;
+import hudson.util.CopyOnWriteMap;
 import hudson.util.DescribableList;
 import hudson.views.ViewsTabBar;
 
@@ -90,7 +88,7 @@ public abstract class AbstractRunnableItemGroup<
   public AbstractRunnableItemGroup(ItemGroup parent, String name)
       throws IOException {
     super(parent, name);
-    this.projects = Maps.newHashMap();
+    this.projects = new CopyOnWriteMap.Tree<String, T>();
 
     init();
   }
@@ -177,8 +175,11 @@ public abstract class AbstractRunnableItemGroup<
   @Override
   public void onRenamed(T item, String oldName, String newName)
       throws IOException {
-    projects.remove(oldName);
-    projects.put(newName, item);
+    // Writers serialize on the map, readers see one snapshot or the other.
+    synchronized (projects) {
+      projects.remove(oldName);
+      projects.put(newName, item);
+    }
     save();
   }
 
@@ -218,8 +219,17 @@ public abstract class AbstractRunnableItemGroup<
           AbstractRunnableItemGroup.class, DescribableList.class,
           "buildWrappers");
 
+  /**
+   * Our children, keyed by name.  This is always a {@link CopyOnWriteMap},
+   * so that readers (e.g. the UI listing versions) iterate over an immutable
+   * snapshot without ever blocking the builds that add to it.
+   * <p>
+   * NOTE: This is transient because our children are always loaded from
+   * their own directories (see {@link #onLoad}).  Any {@code projects}
+   * element in an older {@code config.xml} is ignored.
+   */
   @Nullable
-  protected Map<String, T> projects;
+  protected transient volatile Map<String, T> projects;
 
   /**
    * Shared method for retrieving the directory in which we store nested
@@ -252,6 +262,8 @@ public abstract class AbstractRunnableItemGroup<
   /** {@inheritDoc} */
   @Override
   public Collection<T> getItems() {
+    // This is a view of the current snapshot, so it is safe to iterate
+    // while children are concurrently added.
     return Collections.unmodifiableCollection(projects.values());
   }
 
@@ -305,7 +317,8 @@ public abstract class AbstractRunnableItemGroup<
     getPublishersList().setOwner(this);
     getBuildWrappersList().setOwner(this);
 
-    this.projects = loadChildren(this, getJobsDir(), KEYED_BY_NAME);
+    // Children are unmarshalled in parallel, see ChildLoader.
+    this.projects = ChildLoader.load(this, getJobsDir(), projects);
     init();
   }
 
@@ -378,8 +391,10 @@ public abstract class AbstractRunnableItemGroup<
   public void addItem(T project) throws IOException {
     checkNotNull(project);
     checkNotNull(projects);
-    checkArgument(!projects.containsKey(project.getName()));
-    projects.put(project.getName(), project);
+    synchronized (projects) {
+      checkArgument(!projects.containsKey(project.getName()));
+      projects.put(project.getName(), project);
+    }
   }
 
   /** {@inheritDoc} */
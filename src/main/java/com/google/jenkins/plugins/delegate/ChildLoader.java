@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.delegate;
+
+import static java.util.logging.Level.WARNING;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.security.ACL;
+import hudson.util.CopyOnWriteMap;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * This is a drop-in replacement for {@code ItemGroupMixIn.loadChildren}
+ * that reads and unmarshals the {@code config.xml} of each child directory on
+ * a bounded, shared pool of threads.
+ * <p>
+ * Children are always inserted into the resulting map in the sorted order of
+ * their directory names, regardless of the order in which they finish
+ * loading.  Loads that are themselves triggered from a loader thread (e.g.
+ * a nested {@link AbstractRunnableItemGroup}) happen inline on that thread,
+ * so that nesting can never starve the pool.
+ */
+final class ChildLoader {
+  private static final Logger logger = Logger.getLogger(
+      ChildLoader.class.getName());
+
+  /**
+   * Load the children of {@code parent} that are stored under {@code dir}.
+   *
+   * @param parent The item group into which the children are loaded
+   * @param dir The directory containing a sub-directory per child
+   * @param existing The children currently loaded, whose identity we retain
+   * across reloads, or {@code null} on the first load.
+   * @return the children, keyed by name
+   */
+  static <T extends Item> CopyOnWriteMap.Tree<String, T> load(
+      final ItemGroup parent, File dir,
+      @Nullable final Map<String, T> existing) throws IOException {
+    dir.mkdirs();  // make sure it exists
+
+    final CopyOnWriteMap.Tree<String, T> result =
+        new CopyOnWriteMap.Tree<String, T>();
+    final File[] subdirs = dir.listFiles(DIRECTORIES);
+    if (subdirs == null) {
+      return result;
+    }
+    // Sorting gives us a deterministic insertion order.
+    Arrays.sort(subdirs);
+
+    if (subdirs.length < PARALLEL_THRESHOLD || Boolean.TRUE.equals(
+        INSIDE_LOADER.get())) {
+      for (File subdir : subdirs) {
+        put(result, loadOne(parent, subdir, existing));
+      }
+      return result;
+    }
+
+    final List<Future<T>> futures =
+        Lists.newArrayListWithCapacity(subdirs.length);
+    for (final File subdir : subdirs) {
+      futures.add(POOL.submit(new Callable<T>() {
+          @Override
+          public T call() throws IOException {
+            INSIDE_LOADER.set(Boolean.TRUE);
+            // Loading happens on behalf of Jenkins, not the caller.
+            final SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+            try {
+              return loadOne(parent, subdir, existing);
+            } finally {
+              SecurityContextHolder.setContext(context);
+              INSIDE_LOADER.remove();
+            }
+          }
+        }));
+    }
+
+    try {
+      for (Future<T> future : futures) {
+        put(result, future.get());
+      }
+    } catch (InterruptedException e) {
+      for (Future<T> future : futures) {
+        future.cancel(true /* may interrupt */);
+      }
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+    return result;
+  }
+
+  /** Insert the loaded item into the map, if it loaded successfully. */
+  private static <T extends Item> void put(Map<String, T> map,
+      @Nullable T item) {
+    if (item != null) {
+      map.put(item.getName(), item);
+    }
+  }
+
+  /**
+   * Load a single child, retaining the identity of any existing child object
+   * with the same name.
+   *
+   * @return the loaded child, or {@code null} if it could not be loaded.
+   */
+  @Nullable
+  private static <T extends Item> T loadOne(ItemGroup parent, File subdir,
+      @Nullable Map<String, T> existing) {
+    try {
+      T item = (existing == null) ? null : existing.get(subdir.getName());
+      if (item != null) {
+        item.onLoad(parent, subdir.getName());
+        return item;
+      }
+      final XmlFile xmlFile = Items.getConfigFile(subdir);
+      if (!xmlFile.exists()) {
+        logger.log(WARNING, "could not find file " + xmlFile.getFile());
+        return null;
+      }
+      return (T) Items.load(parent, subdir);
+    } catch (IOException e) {
+      logger.log(WARNING, "could not load " + subdir, e);
+      return null;
+    }
+  }
+
+  /** Filter for the per-child sub-directories. */
+  private static final FileFilter DIRECTORIES = new FileFilter() {
+      @Override
+      public boolean accept(File child) {
+        return child.isDirectory();
+      }
+    };
+
+  /** Below this many children we don't bother with the pool. */
+  @VisibleForTesting
+  static final int PARALLEL_THRESHOLD = Integer.getInteger(
+      ChildLoader.class.getName() + ".threshold", 16);
+
+  /** The bound on how many children we unmarshal at a time. */
+  private static final int POOL_SIZE = Integer.getInteger(
+      ChildLoader.class.getName() + ".poolSize",
+      Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+  /** Whether the current thread is one of our loader threads. */
+  private static final ThreadLocal<Boolean> INSIDE_LOADER =
+      new ThreadLocal<Boolean>();
+
+  /** The shared pool on which children are loaded. */
+  private static final ExecutorService POOL = Executors.newFixedThreadPool(
+      POOL_SIZE, new NamingThreadFactory(new DaemonThreadFactory(),
+          ChildLoader.class.getSimpleName()));
+
+  /** Do not instantiate this class. */
+  private ChildLoader() {}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+
+import hudson.XmlFile;
+import hudson.model.Items;
+import hudson.model.ParametersAction;
+import hudson.util.XStream2;
+
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMRevisionAction;
+import jenkins.scm.api.SCMSource;
+
+/**
+ * Records, for a {@link YamlProject} with build avoidance enabled, the child
+ * build that successfully built each combination of source revision, DSL,
+ * restriction and parameters, so that later builds of the same combination
+ * may reuse its result instead of building it all over again.
+ * <p>
+ * The branches of a {@link YamlMultiBranchProject} share a single cache, so
+ * that e.g. a pull request and its merge target that point at the same
+ * commit are only built once.  Since the branch is not part of the key, the
+ * {@link SCMHead} of the revision is omitted when keying on it, but the
+ * {@link SCMSource} of the branch is not: branches only share results with
+ * branches checked out from the same source (and so the same remote and
+ * credentials), so that e.g. a pull request from a fork never stands in for
+ * a trusted branch.
+ * <p>
+ * The cache is persisted alongside the project (or multibranch project) as
+ * {@code avoidance.xml}, and retains only the most recently used entries.
+ */
+final class AvoidanceCache {
+  private static final Logger logger = Logger.getLogger(
+      AvoidanceCache.class.getName());
+
+  /** The child build that successfully built a given combination. */
+  static final class Entry {
+    public Entry(@Nullable String projectName, String childName,
+        int childNumber, int number) {
+      this.projectName = projectName;
+      this.childName = checkNotNull(childName);
+      this.childNumber = childNumber;
+      this.number = number;
+    }
+
+    /**
+     * The name of the {@link YamlProject} whose build delegated to the
+     * child, which may be a sibling when the cache is shared between
+     * branches, or {@code null} for the project owning the cache.
+     */
+    @Nullable
+    public String getProjectName() {
+      return projectName;
+    }
+    private final String projectName;
+
+    /** The name of the child project that was built. */
+    public String getChildName() {
+      return childName;
+    }
+    private final String childName;
+
+    /** The number of the child build. */
+    public int getChildNumber() {
+      return childNumber;
+    }
+    private final int childNumber;
+
+    /** The number of the {@link YamlBuild} that delegated to it. */
+    public int getNumber() {
+      return number;
+    }
+    private final int number;
+  }
+
+  /** Load the cache stored in the given project directory. */
+  static AvoidanceCache load(File rootDir) {
+    final XmlFile file = new XmlFile(Items.XSTREAM2,
+        new File(rootDir, FILE_NAME));
+    if (file.exists()) {
+      try {
+        final AvoidanceCache cache = (AvoidanceCache) file.read();
+        if (cache.entries != null) {
+          cache.file = file;
+          return cache;
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Unable to read " + file, e);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Unable to read " + file, e);
+      }
+    }
+    return new AvoidanceCache(file);
+  }
+
+  private AvoidanceCache(XmlFile file) {
+    this.file = file;
+    this.entries = Maps.newLinkedHashMap();
+  }
+
+  /** @return whether this is the cache stored in the given directory */
+  boolean isIn(File rootDir) {
+    return file.getFile().getParentFile().equals(rootDir);
+  }
+
+  /**
+   * @return the key under which we record the given build of a DSL with the
+   * given hash, or {@code null} if the build has no source revision.
+   */
+  @Nullable
+  static String key(YamlBuild<?> build, String hash) {
+    final SCMRevisionAction revision =
+        build.getAction(SCMRevisionAction.class);
+    if (revision == null || revision.getRevision() == null) {
+      return null;
+    }
+    final ParametersAction parameters =
+        build.getAction(ParametersAction.class);
+    final YamlProject<?> project = build.getParent();
+    final StringBuilder key = new StringBuilder()
+        .append(REVISIONS.toXML(revision.getRevision())).append('\n')
+        .append(hash).append('\n')
+        .append(Items.XSTREAM2.toXML(project.getRestriction()))
+        .append('\n');
+    if (project.getParent() instanceof YamlMultiBranchProject) {
+      key.append(project.getBranch().getSourceId()).append('\n');
+    }
+    if (parameters != null) {
+      key.append(Items.XSTREAM2.toXML(parameters.getParameters()));
+    }
+    return Hashing.md5().hashString(key.toString(), Charsets.UTF_8)
+        .toString();
+  }
+
+  /** @return the entry recorded under the given key, if any */
+  @Nullable
+  synchronized Entry get(String key) {
+    final Entry entry = entries.remove(checkNotNull(key));
+    if (entry != null) {
+      // Keep it as the most recently used.
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+
+  /** Record an entry under the given key. */
+  synchronized void put(String key, Entry entry) {
+    entries.remove(checkNotNull(key));
+    entries.put(key, checkNotNull(entry));
+    final Iterator<String> iterator = entries.keySet().iterator();
+    while (entries.size() > MAX_SIZE) {
+      iterator.next();
+      iterator.remove();
+    }
+    // Failing to persist this isn't fatal, we just build more.
+    try {
+      file.write(this);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to write " + file, e);
+    }
+  }
+
+  /** The entries, least recently used first. */
+  private Map<String, Entry> entries;
+
+  /** The file to which we persist the cache. */
+  private transient XmlFile file;
+
+  /** The bound on how many entries we retain per project. */
+  private static final int MAX_SIZE = Integer.getInteger(
+      AvoidanceCache.class.getName() + ".maxSize", 256);
+
+  /** Serializes revisions for keying, without the branch they were on. */
+  private static final XStream2 REVISIONS = new XStream2();
+  static {
+    REVISIONS.omitField(SCMRevision.class, "head");
+  }
+
+  /** The name of the file in which a project's cache is persisted. */
+  private static final String FILE_NAME = "avoidance.xml";
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.jenkins.plugins.dsl.restrict.RestrictedProject;
+import com.google.jenkins.plugins.dsl.util.PluginGeneration;
+
+import hudson.model.AbstractItem;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+
+/**
+ * A cache of the {@code config.xml} of children successfully bound from a
+ * given DSL, so that sibling {@link YamlProject}s (e.g. the branches of a
+ * {@link YamlMultiBranchProject}) with an identical DSL may clone their child
+ * instead of re-binding it.
+ * <p>
+ * Binding is a function of the DSL, the restriction of the project and the
+ * restrictions of its ancestors, so entries are keyed on the hash of the DSL,
+ * the serialized chain of restrictions and the full name of the project's
+ * parent.
+ * Entries are flushed whenever the set of loaded plugins changes.
+ */
+final class BoundProjectCache {
+  /**
+   * @return the serialized form of a child bound for {@code project} from
+   * the DSL with the given hash, or {@code null} if we have none.
+   */
+  @Nullable
+  static String get(YamlProject<?> project, String hash) {
+    synchronized (CACHE) {
+      final PluginGeneration current = PluginGeneration.current();
+      if (!current.equals(generation)) {
+        CACHE.invalidateAll();
+        generation = current;
+      }
+    }
+    return CACHE.getIfPresent(key(project, hash));
+  }
+
+  /**
+   * Record the serialized form of a child bound for {@code project} from
+   * the DSL with the given hash.
+   */
+  static void put(YamlProject<?> project, String hash, String xml) {
+    CACHE.put(key(project, hash), xml);
+  }
+
+  /** Flush all entries. */
+  @VisibleForTesting
+  static void clear() {
+    CACHE.invalidateAll();
+  }
+
+  @VisibleForTesting
+  static String key(YamlProject<?> project, String hash) {
+    // NOTE: The restrictions of our ancestors may be reconfigured without
+    // renaming anything, so we key on the effective chain of restrictions
+    // rather than relying on the scope to stand in for them.
+    final StringBuilder restrictions = new StringBuilder()
+        .append(Items.XSTREAM2.toXML(project.getRestriction()));
+    ItemGroup parent = project.getParent();
+    while (parent instanceof AbstractItem) {
+      if (parent instanceof RestrictedProject) {
+        restrictions.append('\n').append(Items.XSTREAM2.toXML(
+            ((RestrictedProject) parent).getRestriction()));
+      }
+      parent = ((AbstractItem) parent).getParent();
+    }
+    final String scope = (project.getParent() instanceof AbstractItem)
+        ? ((AbstractItem) project.getParent()).getFullName() : "";
+    return String.format("%s:%s:%s", scope, Hashing.md5()
+        .hashString(restrictions.toString(), Charsets.UTF_8).toString(),
+        hash);
+  }
+
+  /** The bound on how many serialized children we retain. */
+  private static final int MAX_SIZE = Integer.getInteger(
+      BoundProjectCache.class.getName() + ".maxSize", 128);
+
+  private static final Cache<String, String> CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build();
+
+  /** The generation of plugins for which our entries are valid. */
+  private static PluginGeneration generation;
+
+  /** Do not instantiate this class. */
+  private BoundProjectCache() {}
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import hudson.Extension;
+import hudson.model.Result;
+import hudson.model.listeners.RunListener;
+
+/**
+ * An index of the child build to which each {@link YamlBuild} of a
+ * {@link YamlProject} delegated, so that a parent build may be mapped to its
+ * child build (and the child build's outcome) without loading either
+ * {@code build.xml}.
+ * <p>
+ * The index is persisted alongside the project as {@code builds.idx}, as a
+ * sequence of fixed-size records:
+ * <pre><code>
+ *   int   parent build number
+ *   int   child build number
+ *   long  child build duration, in milliseconds
+ *   byte  child build result ordinal, or -1 if none
+ *   byte  length of the child name, in bytes
+ *   byte* child name, UTF-8 encoded and zero-padded
+ * </code></pre>
+ * Builds from before the index existed, or whose child has an unusually
+ * long name, simply have no record, and callers are expected to fall back on
+ * loading the build.  The records of deleted builds are dropped, so the
+ * index is only appended to between deletions.
+ * <p>
+ * NOTE: We read the records into memory as the index grows, rather than map
+ * the file, since a mapping holds the file open until it is collected, which
+ * on Windows prevents renaming or deleting the project.
+ */
+public final class BuildIndex {
+  private static final Logger logger = Logger.getLogger(
+      BuildIndex.class.getName());
+
+  /** A single parent build's record in the index. */
+  @ExportedBean(defaultVisibility = 2)
+  public static final class Record {
+    public Record(int number, String childName, int childNumber,
+        @Nullable Result result, long duration) {
+      this.number = number;
+      this.childName = checkNotNull(childName);
+      this.childNumber = childNumber;
+      this.result = result;
+      this.duration = duration;
+    }
+
+    /** The number of the parent {@link YamlBuild}. */
+    @Exported
+    public int getNumber() {
+      return number;
+    }
+    private final int number;
+
+    /** The name of the child project to which the build delegated. */
+    @Exported
+    public String getChildName() {
+      return childName;
+    }
+    private final String childName;
+
+    /** The number of the child build to which the build delegated. */
+    @Exported
+    public int getChildNumber() {
+      return childNumber;
+    }
+    private final int childNumber;
+
+    /** The result of the child build. */
+    @Exported
+    @Nullable
+    public Result getResult() {
+      return result;
+    }
+    private final Result result;
+
+    /** The duration of the child build, in milliseconds. */
+    @Exported
+    public long getDuration() {
+      return duration;
+    }
+    private final long duration;
+  }
+
+  /** Open the index stored in the given project directory. */
+  static BuildIndex open(File rootDir) {
+    return new BuildIndex(new File(rootDir, FILE_NAME));
+  }
+
+  private BuildIndex(File file) {
+    this.file = checkNotNull(file);
+  }
+
+  /** @return whether this is the index stored in the given directory */
+  boolean isIn(File rootDir) {
+    return file.getParentFile().equals(rootDir);
+  }
+
+  /**
+   * Append the record for a parent build to the index.  Failing to do so
+   * isn't fatal, since callers fall back on loading the build.
+   */
+  synchronized void append(Record record) {
+    final byte[] name = record.getChildName().getBytes(Charsets.UTF_8);
+    if (name.length > MAX_NAME_LENGTH) {
+      logger.log(Level.FINE, "Not indexing child with long name: {0}",
+          record.getChildName());
+      return;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    buffer.putInt(record.getNumber());
+    buffer.putInt(record.getChildNumber());
+    buffer.putLong(record.getDuration());
+    buffer.put((byte) ((record.getResult() == null)
+        ? -1 : record.getResult().ordinal));
+    buffer.put((byte) name.length);
+    buffer.put(name);
+    buffer.rewind();
+
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        final FileChannel channel = raf.getChannel();
+        // Drop any partial record left behind by an interrupted append.
+        final long size = channel.size() - (channel.size() % RECORD_SIZE);
+        channel.write(buffer, size);
+        channel.truncate(size + RECORD_SIZE);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to append to " + file, e);
+    }
+  }
+
+  /**
+   * @return the record for the parent build with the given number, or
+   * {@code null} if it isn't indexed.
+   */
+  @Nullable
+  public Record get(int number) {
+    final ByteBuffer records;
+    final Integer offset;
+    synchronized (this) {
+      records = read();
+      if (records == null) {
+        return null;
+      }
+      offset = offsets.get(number);
+    }
+    return (offset == null) ? null : read(records, offset);
+  }
+
+  /**
+   * Drop the records for the parent build with the given number, which has
+   * been deleted, compacting the index.
+   */
+  synchronized void remove(int number) {
+    final ByteBuffer records = read();
+    if (records == null || !offsets.containsKey(number)) {
+      return;
+    }
+    final ByteBuffer compacted = ByteBuffer.allocate(records.limit());
+    for (int offset = 0; offset < records.limit(); offset += RECORD_SIZE) {
+      if (records.getInt(offset) != number) {
+        final ByteBuffer record = records.duplicate();
+        record.position(offset);
+        record.limit(offset + RECORD_SIZE);
+        compacted.put(record);
+      }
+    }
+    compacted.flip();
+
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        final FileChannel channel = raf.getChannel();
+        while (compacted.hasRemaining()) {
+          channel.write(compacted, compacted.position());
+        }
+        channel.truncate(compacted.limit());
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to compact " + file, e);
+    }
+    // Reread the index afresh, whether or not we managed to compact it.
+    this.records = null;
+    offsets.clear();
+  }
+
+  /** @return the records in the index, most recently appended first */
+  public List<Record> getAll() {
+    final ByteBuffer records = read();
+    if (records == null) {
+      return ImmutableList.of();
+    }
+    final ImmutableList.Builder<Record> all = ImmutableList.builder();
+    for (int offset = records.limit() - RECORD_SIZE; offset >= 0;
+         offset -= RECORD_SIZE) {
+      all.add(read(records, offset));
+    }
+    return all.build();
+  }
+
+  /** @return the number of builds in the index */
+  public int size() {
+    final ByteBuffer records = read();
+    return (records == null) ? 0 : records.limit() / RECORD_SIZE;
+  }
+
+  /** Decode the record at the given offset. */
+  private static Record read(ByteBuffer records, int offset) {
+    final ByteBuffer record = records.duplicate();
+    record.position(offset);
+    final int number = record.getInt();
+    final int childNumber = record.getInt();
+    final long duration = record.getLong();
+    final byte ordinal = record.get();
+    final byte[] name = new byte[record.get()];
+    record.get(name);
+    return new Record(number, new String(name, Charsets.UTF_8), childNumber,
+        (ordinal < 0 || ordinal >= RESULTS.length) ? null : RESULTS[ordinal],
+        duration);
+  }
+
+  /**
+   * @return a read-only view of the complete records in the index, of which
+   * we only read those appended since we last looked, or {@code null} if it
+   * is empty.
+   */
+  @Nullable
+  private synchronized ByteBuffer read() {
+    final long length = file.length();
+    final int size = (int) (length - (length % RECORD_SIZE));
+    if (records != null && records.limit() > size) {
+      // The index was deleted (or replaced) beneath us.
+      records = null;
+      offsets.clear();
+    }
+    if (size == 0) {
+      return null;
+    }
+    if (records == null || records.limit() < size) {
+      final ByteBuffer grown = ByteBuffer.allocate(size);
+      if (records != null) {
+        grown.put(records.duplicate());
+      }
+      try {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+          final FileChannel channel = raf.getChannel();
+          // Our buffer mirrors the file, so read the rest in at its offset.
+          while (grown.hasRemaining()) {
+            if (channel.read(grown, grown.position()) < 0) {
+              throw new EOFException(file.toString());
+            }
+          }
+        } finally {
+          raf.close();
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Unable to read " + file, e);
+        return null;
+      }
+      grown.flip();
+      // Index the parent build numbers of the records we just read.  Later
+      // records for the same build supersede earlier ones.
+      for (int offset = (records == null) ? 0 : records.limit();
+           offset < size; offset += RECORD_SIZE) {
+        offsets.put(grown.getInt(offset), offset);
+      }
+      records = grown;
+    }
+    // Hand out independent views, so that readers needn't synchronize.
+    return records.asReadOnlyBuffer();
+  }
+
+  private final File file;
+
+  /**
+   * The complete records we have read from the index, if any, which we
+   * replace (rather than modify) as the index grows.
+   */
+  private ByteBuffer records;
+
+  /**
+   * The offset of each parent build's record within {@link #records}, so
+   * that looking one up doesn't scan the index.
+   */
+  private final Map<Integer, Integer> offsets = Maps.newHashMap();
+
+  /** The results we record, indexed by their ordinal. */
+  private static final Result[] RESULTS = new Result[] {
+    Result.SUCCESS, Result.UNSTABLE, Result.FAILURE, Result.NOT_BUILT,
+    Result.ABORTED
+  };
+
+  /** The size of each record in the index. */
+  private static final int RECORD_SIZE = 64;
+
+  /** The longest child name (in bytes) that fits in a record. */
+  private static final int MAX_NAME_LENGTH =
+      RECORD_SIZE - (4 + 4 + 8 + 1 + 1);
+
+  /** The name of the file in which a project's index is persisted. */
+  private static final String FILE_NAME = "builds.idx";
+
+  /**
+   * Drops the records of {@link YamlBuild}s as they are deleted (e.g. by
+   * log rotation), so that the index only grows with the builds we keep.
+   */
+  @Extension
+  public static class DeletionListener extends RunListener<YamlBuild> {
+    public DeletionListener() {
+      super(YamlBuild.class);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onDeleted(YamlBuild build) {
+      build.getParent().getBuildIndex().remove(build.getNumber());
+    }
+  }
+}
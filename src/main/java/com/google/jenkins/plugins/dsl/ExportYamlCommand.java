@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import org.kohsuke.args4j.Argument;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import hudson.model.ItemGroup;
+
+/**
+ * A CLI command for streaming a zip of the Yaml DSL for every project on the
+ * instance, or within a folder, to stdout.
+ * <pre><code>
+ *   java -jar jenkins-cli.jar export-yaml my/folder &gt; export.zip
+ * </code></pre>
+ *
+ * @see YamlExporter
+ */
+@Extension
+public class ExportYamlCommand extends CLICommand {
+  @Argument(metaVar = "FOLDER", required = false,
+      usage = "Full name of the folder to export, or the whole instance")
+  public String folder;
+
+  /** {@inheritDoc} */
+  @Override
+  public String getShortDescription() {
+    return Messages.ExportYamlCommand_ShortDescription();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected int run() throws Exception {
+    final ItemGroup root = YamlExportAction.resolve(folder);
+    if (root == null) {
+      stderr.println(Messages.ExportYamlCommand_NoSuchFolder(folder));
+      return -1;
+    }
+    YamlExporter.export(root, stdout);
+    stdout.flush();
+    return 0;
+  }
+}
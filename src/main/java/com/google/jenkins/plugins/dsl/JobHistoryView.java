@@ -17,14 +17,19 @@ package com.google.jenkins.plugins.dsl;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
+
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 import hudson.model.Descriptor;
 import hudson.model.Item;
+import hudson.model.ItemGroup;
 import hudson.model.ListView;
 import hudson.model.TopLevelItem;
 import hudson.util.DescribableList;
@@ -35,6 +40,10 @@ import hudson.views.WeatherColumn;
 /**
  * A simple extension of {@link ListView} intended for displaying the revision
  * history for a {@link YamlProject} DSL job.
+ * <p>
+ * The history is rendered a page at a time, newest-first, from the
+ * project's {@link VersionIndex}, so that rendering it only touches the
+ * children on the visible page.
  */
 public class JobHistoryView extends ListView {
   public JobHistoryView() {
@@ -90,4 +99,76 @@ public class JobHistoryView extends ListView {
   public List<TopLevelItem> getItems() {
     return ImmutableList.copyOf(getOwnerItemGroup().getItems());
   }
+
+  /** @return the number of versions we list per page */
+  public int getPageSize() {
+    return PAGE_SIZE;
+  }
+
+  /** @return the number of pages of history, which is at least one */
+  public int getPageCount() {
+    return Math.max(1, (getSize() + PAGE_SIZE - 1) / PAGE_SIZE);
+  }
+
+  /**
+   * @return the (zero-based) page requested through the {@code page} query
+   * parameter of the current request, clipped to the pages we have
+   */
+  public int getPage() {
+    final StaplerRequest req = Stapler.getCurrentRequest();
+    final String param = (req == null) ? null : req.getParameter("page");
+    if (param == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Math.min(Integer.parseInt(param),
+          getPageCount() - 1));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the versions on the given (zero-based) page of history,
+   * newest-first
+   */
+  public List<TopLevelItem> getItems(int page) {
+    final int from = page * PAGE_SIZE;
+    final int to = from + PAGE_SIZE;
+    final VersionIndex index = getIndex();
+    if (index == null) {
+      final List<TopLevelItem> all = Lists.reverse(getItems());
+      return all.subList(Math.min(from, all.size()),
+          Math.min(to, all.size()));
+    }
+
+    final ItemGroup<? extends TopLevelItem> owner = getOwnerItemGroup();
+    final List<TopLevelItem> result = Lists.newArrayList();
+    for (VersionIndex.Entry entry : index.getEntries(from, to)) {
+      final TopLevelItem item = owner.getItem(entry.getName());
+      if (item != null) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /** @return the total number of versions in our history */
+  private int getSize() {
+    final VersionIndex index = getIndex();
+    return (index == null) ? getOwnerItemGroup().getItems().size()
+        : index.size();
+  }
+
+  /** @return the index of our owning project's versions, if it has one */
+  @Nullable
+  private VersionIndex getIndex() {
+    final ItemGroup owner = getOwnerItemGroup();
+    return (owner instanceof YamlProject)
+        ? ((YamlProject) owner).getVersionIndex() : null;
+  }
+
+  /** The number of versions we list per page. */
+  private static final int PAGE_SIZE = Math.max(1, Integer.getInteger(
+      JobHistoryView.class.getName() + ".pageSize", 25));
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Lists;
+
+import hudson.Extension;
+import hudson.model.CauseAction;
+import hudson.model.Executor;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.queue.CauseOfInterruption;
+import hudson.model.queue.QueueListener;
+
+import jenkins.util.Timer;
+
+/**
+ * This implements {@link YamlProject#isLatestWins()}.  When a new build of
+ * such a project enters the {@link Queue}, any of its builds that are still
+ * waiting in the queue are cancelled (with their causes folded into the new
+ * build), and any of its builds that are still running are aborted (along
+ * with the child builds they started), so that builds for the same branch
+ * collapse into the newest one.
+ * <p>
+ * NOTE: We do this once the new item has been accepted into the queue, so
+ * that an item that some {@link Queue.QueueDecisionHandler} vetoes, or that
+ * the queue folds into an existing item, supersedes nothing.  However, we
+ * do this as the item is queued rather than as it starts, since a project
+ * without concurrent builds wouldn't start the newer build until the older
+ * one had finished anyway.
+ */
+@Extension
+public class LatestWinsQueueListener extends QueueListener {
+  private static final Logger logger = Logger.getLogger(
+      LatestWinsQueueListener.class.getName());
+
+  /** {@inheritDoc} */
+  @Override
+  public void onEnterWaiting(Queue.WaitingItem newer) {
+    if (!(newer.task instanceof YamlProject)
+        || !((YamlProject) newer.task).isLatestWins()) {
+      return;
+    }
+    final YamlProject<?> project = (YamlProject<?>) newer.task;
+
+    // Carry the reasons for the builds we cancel over to the newer build,
+    // which builds on their behalf.
+    final Queue queue = Queue.getInstance();
+    final List<CauseAction> causes = Lists.newArrayList();
+    for (Queue.Item item : queue.getItems(project)) {
+      if (item == newer) {
+        continue;
+      }
+      final CauseAction cause = item.getAction(CauseAction.class);
+      if (cause != null) {
+        causes.add(cause);
+      }
+      final ParametersAction parameters =
+          item.getAction(ParametersAction.class);
+      if (parameters != null) {
+        // The newer build's parameters win.
+        logger.log(Level.INFO, "Superseding {0} of {1}, with parameters {2}",
+            new Object[] { item.getId(), project.getFullName(),
+                           parameters.getParameters() });
+      }
+      // These show up as cancelled Queue.LeftItems, just as though the
+      // user had cancelled them.
+      queue.cancel(item);
+    }
+    if (!causes.isEmpty()) {
+      CauseAction folded = newer.getAction(CauseAction.class);
+      if (folded == null) {
+        folded = new CauseAction();
+        newer.addAction(folded);
+      }
+      for (CauseAction cause : causes) {
+        folded.getCauses().addAll(cause.getCauses());
+      }
+    }
+
+    // Note the running builds now, but abort them once we no longer hold the
+    // Queue's lock, since interrupting a build may block on its executor.
+    final List<YamlBuild<?>> running = Lists.newArrayList();
+    YamlBuild<?> older = project.getLastBuild();
+    if (older != null && !older.isBuilding()) {
+      older = older.getPreviousBuildInProgress();
+    }
+    for (; older != null; older = older.getPreviousBuildInProgress()) {
+      running.add(older);
+    }
+    if (running.isEmpty()) {
+      return;
+    }
+    final CauseOfInterruption cause =
+        new YamlBuild.SupersededInterruption(project);
+    Timer.get().submit(new Runnable() {
+        @Override
+        public void run() {
+          // Each aborted build in turn aborts the child build it delegated
+          // to.
+          for (YamlBuild<?> build : running) {
+            final Executor executor = Executor.of(build);
+            if (executor != null) {
+              executor.interrupt(Result.ABORTED, cause);
+            }
+          }
+        }
+      });
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import org.kohsuke.args4j.Argument;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import hudson.model.Item;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONObject;
+
+/**
+ * A CLI command for validating a YAML DSL, read from stdin, against a
+ * {@link YamlProject} or {@link YamlMultiBranchProject} without creating
+ * any jobs.  The result is written to stdout as JSON, and the exit code is
+ * non-zero if the DSL is invalid.
+ * <pre><code>
+ *   java -jar jenkins-cli.jar lint-yaml my/project &lt; .jenkins.yaml
+ * </code></pre>
+ *
+ * @see YamlLinter
+ */
+@Extension
+public class LintYamlCommand extends CLICommand {
+  @Argument(metaVar = "JOB", required = true,
+      usage = "Full name of the YAML project to lint against")
+  public String job;
+
+  /** {@inheritDoc} */
+  @Override
+  public String getShortDescription() {
+    return Messages.LintYamlCommand_ShortDescription();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected int run() throws Exception {
+    final Item item = checkNotNull(Jenkins.getInstance())
+        .getItemByFullName(job);
+    if (item == null) {
+      stderr.println(Messages.LintYamlCommand_NoSuchJob(job));
+      return 1;
+    }
+    item.checkPermission(Item.CONFIGURE);
+
+    final String yaml = YamlLinter.read(stdin);
+    final JSONObject result;
+    if (item instanceof YamlProject) {
+      result = YamlLinter.lint((YamlProject) item, yaml);
+    } else if (item instanceof YamlMultiBranchProject) {
+      result = YamlLinter.lint((YamlMultiBranchProject) item, yaml);
+    } else {
+      stderr.println(Messages.LintYamlCommand_NotYamlProject(job));
+      return 1;
+    }
+
+    stdout.println(result.toString(2 /* indent */));
+    return result.getBoolean("valid") ? 0 : 1;
+  }
+}
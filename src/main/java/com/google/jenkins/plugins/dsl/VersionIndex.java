@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Items;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * A compact, newest-first index of the versions (children) that a
+ * {@link YamlProject} has instantiated, so that the project's history may be
+ * listed and paged through without touching every child.
+ * <p>
+ * The index is persisted alongside the project as {@code versions.xml}.  It
+ * is rebuilt from the children themselves if it is missing, or disagrees
+ * with the set of children we actually loaded.
+ */
+public final class VersionIndex {
+  private static final Logger logger = Logger.getLogger(
+      VersionIndex.class.getName());
+
+  /** A single version of a {@link YamlProject}. */
+  public static final class Entry {
+    public Entry(String name, String displayName, long creationTime,
+        @Nullable Result lastResult) {
+      this.name = checkNotNull(name);
+      this.displayName = checkNotNull(displayName);
+      this.creationTime = creationTime;
+      this.lastResult = lastResult;
+    }
+
+    /** The name of the child, which leads with its version. */
+    public String getName() {
+      return name;
+    }
+    private final String name;
+
+    /** The display name of the child, e.g. {@code v0012}. */
+    public String getDisplayName() {
+      return displayName;
+    }
+    private final String displayName;
+
+    /** When the child was created, in milliseconds since the epoch. */
+    public long getCreationTime() {
+      return creationTime;
+    }
+    private final long creationTime;
+
+    /** The result of the child's last completed build, if any. */
+    @Nullable
+    public Result getLastResult() {
+      return lastResult;
+    }
+    private volatile Result lastResult;
+  }
+
+  /**
+   * Load the index for the given project, rebuilding it from the project's
+   * children if necessary.
+   */
+  static VersionIndex load(YamlProject<?> project) {
+    final XmlFile file = new XmlFile(Items.XSTREAM2,
+        new File(project.getRootDir(), FILE_NAME));
+    final Collection<? extends AbstractProject> children =
+        project.getItems();
+
+    if (file.exists()) {
+      try {
+        final VersionIndex index = (VersionIndex) file.read();
+        index.file = file;
+        if (index.matches(children)) {
+          return index;
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Unable to read " + file, e);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Unable to read " + file, e);
+      }
+    }
+
+    // NOTE: Our children are sorted by name, but e.g. v10000 sorts before
+    // v9999, so order them by their parsed versions instead.
+    final List<AbstractProject> newestFirst = Lists.newArrayList(children);
+    Collections.sort(newestFirst, new Comparator<AbstractProject>() {
+        @Override
+        public int compare(AbstractProject lhs, AbstractProject rhs) {
+          return Ints.compare(YamlProject.getVersion(rhs),
+              YamlProject.getVersion(lhs));
+        }
+      });
+    final VersionIndex index = new VersionIndex(file);
+    for (AbstractProject child : newestFirst) {
+      final Run last = child.getLastCompletedBuild();
+      index.entries.add(new Entry(child.getName(), child.getDisplayName(),
+          getCreationTime(child), (last == null) ? null : last.getResult()));
+    }
+    index.saveQuietly();
+    return index;
+  }
+
+  /**
+   * @return our best estimate of when an unindexed child was created: when
+   * it was first built, or failing that, when its configuration was written.
+   * Its directory's timestamp is no use, since it changes with every build.
+   */
+  private static long getCreationTime(AbstractProject child) {
+    final Run first = child.getFirstBuild();
+    if (first != null) {
+      return first.getTimeInMillis();
+    }
+    return child.getConfigFile().getFile().lastModified();
+  }
+
+  private VersionIndex(XmlFile file) {
+    this.file = file;
+    this.entries = Lists.newArrayList();
+  }
+
+  /** @return whether this is the index stored in the given directory */
+  boolean isIn(File rootDir) {
+    return file.getFile().getParentFile().equals(rootDir);
+  }
+
+  /** @return the number of versions in the index */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the entries in the range {@code [from, to)}, newest-first, with
+   * the range clipped to the size of the index
+   */
+  public synchronized List<Entry> getEntries(int from, int to) {
+    final int end = Math.min(to, entries.size());
+    final int start = Math.max(0, Math.min(from, end));
+    return ImmutableList.copyOf(entries.subList(start, end));
+  }
+
+  /** Record a newly instantiated child as the newest version. */
+  synchronized void add(AbstractProject child) {
+    entries.add(0, new Entry(child.getName(), child.getDisplayName(),
+        System.currentTimeMillis(), null /* lastResult */));
+    saveQuietly();
+  }
+
+  /** Record the result of a completed build of the named child. */
+  synchronized void update(String name, @Nullable Result result) {
+    for (Entry entry : entries) {
+      if (entry.getName().equals(name)) {
+        entry.lastResult = result;
+        saveQuietly();
+        return;
+      }
+    }
+  }
+
+  /** Forget the named child, which has been deleted. */
+  synchronized void remove(String name) {
+    for (Iterator<Entry> iter = entries.iterator(); iter.hasNext();) {
+      if (iter.next().getName().equals(name)) {
+        iter.remove();
+        saveQuietly();
+        return;
+      }
+    }
+  }
+
+  /** @return whether we index exactly the given children */
+  private boolean matches(Collection<? extends AbstractProject> children) {
+    if (entries == null || entries.size() != children.size()) {
+      return false;
+    }
+    final Set<String> names = Sets.newHashSet();
+    for (Entry entry : entries) {
+      names.add(entry.getName());
+    }
+    for (AbstractProject child : children) {
+      if (!names.contains(child.getName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Persist the index.  Failing to do so isn't fatal, since we rebuild it
+   * if it's missing or stale when we next load.
+   */
+  private void saveQuietly() {
+    try {
+      file.write(this);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to write " + file, e);
+    }
+  }
+
+  /** The entries of the index, newest-first. */
+  private List<Entry> entries;
+
+  /** The file to which we persist the index. */
+  private transient XmlFile file;
+
+  /** The name of the file in which a project's index is persisted. */
+  private static final String FILE_NAME = "versions.xml";
+
+  /**
+   * Keeps the last result of each indexed version up to date, as builds of
+   * the children of {@link YamlProject}s complete.
+   */
+  @Extension
+  public static class ResultListener extends RunListener<Run> {
+    public ResultListener() {
+      super(Run.class);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onCompleted(Run run, TaskListener listener) {
+      if (!(run.getParent() instanceof AbstractProject)) {
+        return;
+      }
+      final AbstractProject child = (AbstractProject) run.getParent();
+      if (child.getParent() instanceof YamlProject) {
+        ((YamlProject<?>) child.getParent()).getVersionIndex()
+            .update(child.getName(), run.getResult());
+      }
+    }
+  }
+}
@@ -24,7 +24,12 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.jenkins.plugins.dsl.tag.YamlTransformProvider;
+import com.google.jenkins.plugins.dsl.util.JsonToYaml;
+import com.google.jenkins.plugins.dsl.util.PluginGeneration;
 
 import hudson.Extension;
 import hudson.model.AbstractProject;
@@ -67,20 +72,85 @@ public class YamlAction implements Action {
     return "asYaml";
   }
 
-  /** The Yaml DSL for the parent project. */
+  /**
+   * The Yaml DSL for the parent project, which we render on demand from the
+   * JSON we hold.
+   */
   @Nullable
   public String getYaml() {
-    return yaml;
+    if (yaml != null) {
+      return yaml;
+    }
+    if (json == null) {
+      return null;
+    }
+
+    final JsonToYaml current = getRenderer();
+    String rendered = RENDERED.getIfPresent(json);
+    if (rendered == null) {
+      rendered = current.toYaml(json);
+      RENDERED.put(json, rendered);
+    }
+    return rendered;
+  }
+
+  /**
+   * @return the renderer for the current generation of plugins, with the
+   * transforms they provide
+   */
+  static JsonToYaml getRenderer() {
+    synchronized (RENDERED) {
+      final PluginGeneration current = PluginGeneration.current();
+      if (!current.equals(generation)) {
+        // Our transforms are provided by plugins.
+        RENDERED.invalidateAll();
+        renderer = new JsonToYaml.Default(YamlTransformProvider.get());
+        generation = current;
+      }
+      return renderer;
+    }
   }
 
   /** Assigns the Yaml DSL to present to the user. */
   public void setYaml(String yaml) {
     this.yaml = checkNotNull(yaml);
+    this.json = null;
   }
 
+  /**
+   * NOTE: Older versions stored the rendered Yaml, which we still present if
+   * we load it, but we now only store it when explicitly assigned.
+   */
   @Nullable
   private String yaml;
 
+  /**
+   * Assigns the (filtered) JSON from which we render the Yaml DSL to present
+   * to the user.
+   */
+  public void setJson(String json) {
+    this.json = checkNotNull(json);
+    this.yaml = null;
+  }
+
+  /** @see #setJson */
+  @Nullable
+  private String json;
+
+  /** The Yaml we have recently rendered, keyed by the JSON it came from. */
+  private static final Cache<String, String> RENDERED =
+      CacheBuilder.newBuilder().maximumSize(Integer.getInteger(
+          YamlAction.class.getName() + ".cacheSize", 32)).build();
+
+  /**
+   * The renderer for the current generation of plugins, which we share so
+   * that it only computes its representation of our transforms once.
+   */
+  private static volatile JsonToYaml renderer;
+
+  /** The generation of plugins for which our rendered Yaml is valid. */
+  private static PluginGeneration generation;
+
   /**
    * @return the parent object of this action. For a build action,
    *         this is the containing build. For a project action, this is the
@@ -100,17 +170,21 @@ public class YamlAction implements Action {
    * this will attach a {@link JobProperty} to the project that
    * surfaces our {@link Action} when asked.
    */
-  public static synchronized YamlAction of(
-      AbstractProject project) throws IOException {
-    YamlProperty property =
-        (YamlProperty) project.getProperty(YamlProperty.class);
-    if (property != null) {
-      return property.getAction();
-    }
-    YamlAction yaml = new YamlAction(project);
-    project.addProperty(new YamlProperty(yaml));
+  public static YamlAction of(AbstractProject project) throws IOException {
+    // NOTE: We only need to serialize attachment to the same project, so
+    // we lock the project (as its own save() does) instead of the class,
+    // which lets unrelated projects be updated concurrently.
+    synchronized (project) {
+      YamlProperty property =
+          (YamlProperty) project.getProperty(YamlProperty.class);
+      if (property != null) {
+        return property.getAction();
+      }
+      YamlAction yaml = new YamlAction(project);
+      project.addProperty(new YamlProperty(yaml));
 
-    return yaml;
+      return yaml;
+    }
   }
 
   /**
@@ -21,11 +21,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.ref.SoftReference;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.kohsuke.stapler.framework.io.LargeText;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -36,11 +39,11 @@ import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.hash.Hashing;
 import com.google.common.primitives.UnsignedLongs;
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.jenkins.plugins.delegate.DelegateSCM;
 import com.google.jenkins.plugins.dsl.util.Binder;
 
 import hudson.FilePath;
+import hudson.Util;
 import hudson.console.ModelHyperlinkNote;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -48,8 +51,11 @@ import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.Cause;
 import hudson.model.CauseAction;
+import hudson.model.Executor;
+import hudson.model.InvisibleAction;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
+import hudson.model.Items;
 import hudson.model.Node;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
@@ -57,12 +63,15 @@ import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Queue;
 import hudson.model.Result;
+import hudson.model.RunAction;
 import hudson.model.TopLevelItem;
 import hudson.model.listeners.ItemListener;
+import hudson.model.queue.CauseOfInterruption;
 import hudson.scm.NullSCM;
 import hudson.slaves.WorkspaceList;
 
 import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
 import jenkins.scm.api.SCMRevisionAction;
 
 import net.sf.json.JSONObject;
@@ -91,21 +100,39 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
     execute(new YamlExecution());
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Once we have delegated to a nested build, these are the nested build's
+   * actions, along with those we preserve from our own.  Once both builds
+   * have completed we (softly) cache this merged list, so that rendering our
+   * history doesn't repeatedly load the nested build.
+   */
   @Override
   public List<Action> getActions() {
-    YamlHistoryAction action = YamlHistoryAction.of(this);
-    if (action == null) {
-      return getRawActions();
+    final DelegatedActions cached = (delegatedActions == null)
+        ? null : delegatedActions.get();
+    if (cached != null && cached.isCurrent()) {
+      // Hand out copies, since callers may (futilely) mutate the list.
+      return Lists.newArrayList(cached.actions);
     }
 
-    List<Action> actions = Lists.newArrayList();
-
-    final AbstractBuild build = action.getBuild(getParent());
+    // Our index names the nested build once it has completed, without our
+    // searching our actions for where we delegated.
+    final BuildIndex.Record record = getChildRecord();
+    final AbstractBuild build;
+    if (record != null) {
+      build = getParent().getChildBuild(record);
+    } else {
+      final YamlHistoryAction action = YamlHistoryAction.of(this);
+      build = (action == null) ? null : action.getBuild(getParent());
+    }
     if (build == null) {
       return getRawActions();
     }
 
+    List<Action> actions = Lists.newArrayList();
+
     // Delegate to the nested build.
     for (Action a : build.getActions()) {
       if (preservedAction(a)) {
@@ -123,16 +150,164 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
       }
     }
 
+    // Until both builds complete, their actions may still change.
+    if (!isBuilding() && !build.isBuilding()) {
+      delegatedActions = new SoftReference<DelegatedActions>(
+          new DelegatedActions(build, actions));
+    }
     return actions;
   }
 
+  /** The merged actions of a completed build, and its nested build. */
+  private static class DelegatedActions {
+    public DelegatedActions(AbstractBuild build, List<Action> actions) {
+      this.build = build;
+      this.actions = Lists.newArrayList(actions);
+    }
+
+    /** @return whether the nested build still exists */
+    public boolean isCurrent() {
+      // This is an in-memory lookup, since we hold the build.
+      return build.getParent().getBuildByNumber(build.getNumber()) == build;
+    }
+
+    private final AbstractBuild build;
+    public final List<Action> actions;
+  }
+
+  /**
+   * @see #getActions
+   * NOTE: This is held softly, since it pins the nested build.
+   */
+  private transient volatile SoftReference<DelegatedActions> delegatedActions;
+
+  /**
+   * @return the record of the nested build to which we delegated, from our
+   * project's {@link BuildIndex}, or {@code null} if we have yet to finish
+   * delegating (or the index has no record of it).
+   */
+  @Nullable
+  BuildIndex.Record getChildRecord() {
+    BuildIndex.Record record = childRecord;
+    if (record == null) {
+      // Our record only goes away along with us, so once we find it we
+      // needn't look it up again.
+      record = getParent().getBuildIndex().get(getNumber());
+      childRecord = record;
+    }
+    return record;
+  }
+
+  /** @see #getChildRecord */
+  private transient volatile BuildIndex.Record childRecord;
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Actions are always added to our own actions, rather than to the merged
+   * list we surface through {@link #getActions}.
+   */
+  @Override
+  public void addAction(Action a) {
+    getRawActions().add(checkNotNull(a));
+    delegatedActions = null;
+    // As Run#addAction would, since we can't defer to it.
+    if (a instanceof RunAction2) {
+      ((RunAction2) a).onAttached(this);
+    } else if (a instanceof RunAction) {
+      ((RunAction) a).onAttached();
+    }
+  }
+
   /**
    * @return whether the given action type should be preserved from our build,
    * vs. extracted from our delegate build.
    */
   private static boolean preservedAction(Action a) {
     return SCMRevisionAction.class.isInstance(a)
-        || CauseAction.class.isInstance(a);
+        || CauseAction.class.isInstance(a)
+        || AvoidedAction.class.isInstance(a);
+  }
+
+  /** @return the canonical hash of the json loaded from a DSL file */
+  private static String hash(JSONObject json) {
+    return UnsignedLongs.toString(Hashing.md5().hashString(
+        json.toString(), Charsets.UTF_8).asLong(), 16);
+  }
+
+  /**
+   * This is attached to a {@link YamlBuild} that didn't build its child,
+   * because an earlier build (possibly of a sibling branch) had already
+   * successfully built the same revision of the same DSL.
+   */
+  public static class AvoidedAction extends InvisibleAction {
+    AvoidedAction(AbstractBuild build) {
+      this.url = build.getUrl();
+      this.displayName = build.getFullDisplayName();
+    }
+
+    /** The URL of the child build whose result we reused. */
+    public String getUrl() {
+      return url;
+    }
+    private final String url;
+
+    /** The full display name of the child build whose result we reused. */
+    public String getDisplayName() {
+      return displayName;
+    }
+    private final String displayName;
+  }
+
+  /**
+   * This is attached to the child builds scheduled by concurrent
+   * {@link YamlBuild}s, so that the {@link Queue} schedules a separate
+   * execution of the shared child for each of them.
+   */
+  public static class ConcurrentChildAction extends InvisibleAction
+      implements Queue.QueueAction {
+    /** {@inheritDoc} */
+    @Override
+    public boolean shouldSchedule(List<Action> actions) {
+      return true;
+    }
+  }
+
+  /**
+   * Records that a build was aborted because a newer {@link YamlBuild} of
+   * the same project superseded it.
+   */
+  public static class SupersededInterruption extends CauseOfInterruption {
+    public SupersededInterruption(YamlProject<?> project) {
+      this.newer = Messages.YamlBuild_NewerBuildOf(
+          project.getFullDisplayName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getShortDescription() {
+      return Messages.YamlBuild_SupersededBy(newer);
+    }
+
+    private final String newer;
+  }
+
+  /**
+   * Records that a child build was aborted because the {@link YamlBuild}
+   * that delegated to it was aborted.
+   */
+  public static class ParentInterruption extends CauseOfInterruption {
+    public ParentInterruption(YamlBuild<?> parent) {
+      this.parent = parent.getFullDisplayName();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getShortDescription() {
+      return Messages.YamlBuild_ParentAborted(parent);
+    }
+
+    private final String parent;
   }
 
   /** Get the actual actions of this build, without delegation */
@@ -174,7 +349,17 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
       maybeLog(listener, Messages.YamlBuild_LoadedJson());
       maybeLog(listener, json.toString());
 
-      final AbstractProject project = getOrCreateProject(json);
+      final String hash = hash(json);
+      final String avoidanceKey = parent.isBuildAvoidance()
+          ? AvoidanceCache.key(YamlBuild.this, hash) : null;
+      if (avoidanceKey != null) {
+        final Result avoided = maybeAvoid(listener, avoidanceKey);
+        if (avoided != null) {
+          return avoided;
+        }
+      }
+
+      final AbstractProject project = getOrCreateProject(json, hash);
 
       maybeLog(listener, Messages.YamlBuild_CreatedJob(
           ModelHyperlinkNote.encodeTo(project, project.getName())));
@@ -185,19 +370,27 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
         parameters = getDefaultParametersValues(project);
       }
 
-      final CauseAction cause = new CauseAction(
-          new Cause.UpstreamCause(YamlBuild.this));
+      final List<Action> actions = Lists.<Action>newArrayList(
+          new CauseAction(new Cause.UpstreamCause(YamlBuild.this)));
+      if (parameters != null) {
+        actions.add(parameters);
+      }
+      if (parent.isConcurrentBuild()) {
+        // Concurrent builds of a shared child must each get their own
+        // execution, rather than being folded into one queue item.
+        actions.add(new ConcurrentChildAction());
+      }
 
       final Queue.Item item = Queue.getInstance().schedule(
-          project, 0, cause, parameters);
+          project, 0, actions);
       if (item == null) {
         throw new IllegalStateException("Project not scheduled");
       }
 
       listener.getLogger().println(
           Messages.YamlBuild_StartDelimiter(parent.getYamlPath()));
+      AbstractBuild newBuild = null;
       try {
-        AbstractBuild newBuild = null;
         do {
           try {
             // This future waits for completion, we only need it to have
@@ -231,6 +424,20 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
 
         writeWholeLogTo(newBuild, listener.getLogger());
 
+        // Now that the child build has completed, index where we delegated.
+        parent.getBuildIndex().append(new BuildIndex.Record(
+            YamlBuild.this.getNumber(), project.getName(),
+            newBuild.getNumber(), newBuild.getResult(),
+            newBuild.getDuration()));
+
+        // Record successful builds, so that rebuilding the same revision
+        // of the same DSL may be avoided.
+        if (avoidanceKey != null && newBuild.getResult() == Result.SUCCESS) {
+          parent.getAvoidanceCache().put(avoidanceKey,
+              new AvoidanceCache.Entry(parent.getName(), project.getName(),
+                  newBuild.getNumber(), YamlBuild.this.getNumber()));
+        }
+
         listener.getLogger().println(
             Messages.YamlBuild_EndDelimiter(parent.getYamlPath()));
         return newBuild.getResult();
@@ -238,6 +445,70 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
         e.printStackTrace(listener.error(
             Messages.YamlBuild_InnerException()));
         return Result.FAILURE;
+      } catch (InterruptedException e) {
+        // We have been aborted, so don't leave our child holding on to
+        // (or waiting for) an executor.
+        abortChild(listener, item, newBuild);
+        throw e;
+      }
+    }
+
+    /**
+     * Cancel our child's queue item, or interrupt our child's build if it
+     * has already started, reporting the executor time this reclaims.  When
+     * the child is itself a {@link YamlBuild} it does the same for its own
+     * child, so this recurses through nested {@link YamlProject}s.
+     */
+    private void abortChild(BuildListener listener, Queue.Item item,
+        @Nullable AbstractBuild newBuild) {
+      final Queue queue = Queue.getInstance();
+      AbstractBuild child = newBuild;
+      if (child == null) {
+        final Queue.Item currentItem = queue.getItem(item.getId());
+        if (currentItem instanceof Queue.LeftItem) {
+          final Queue.Executable executable =
+              ((Queue.LeftItem) currentItem).getExecutable();
+          if (executable instanceof AbstractBuild) {
+            child = (AbstractBuild) executable;
+          }
+        } else if (currentItem != null && queue.cancel(currentItem)) {
+          reportReclaimed(listener, item.task.getFullDisplayName(),
+              item.task.getEstimatedDuration());
+          return;
+        }
+      }
+      if (child == null) {
+        return;
+      }
+
+      final Executor executor = Executor.of(child);
+      if (executor == null) {
+        // The child has already finished.
+        return;
+      }
+      executor.interrupt(Result.ABORTED,
+          new ParentInterruption(YamlBuild.this));
+
+      final long estimate = child.getEstimatedDuration();
+      final long elapsed =
+          System.currentTimeMillis() - child.getStartTimeInMillis();
+      reportReclaimed(listener, ModelHyperlinkNote.encodeTo(
+          "/" + child.getUrl(), child.getFullDisplayName()),
+          (estimate < 0) ? estimate : Math.max(0, estimate - elapsed));
+    }
+
+    /**
+     * Log that we aborted our child, along with the executor time we expect
+     * this to have reclaimed, if the child's duration can be estimated.
+     */
+    private void reportReclaimed(BuildListener listener, String child,
+        long reclaimed) {
+      if (reclaimed < 0) {
+        listener.getLogger().println(
+            Messages.YamlBuild_AbortedChildNoEstimate(child));
+      } else {
+        listener.getLogger().println(Messages.YamlBuild_AbortedChild(
+            child, Util.getTimeSpanString(reclaimed)));
       }
     }
 
@@ -280,12 +551,14 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
      * return until the whole log file gets written out."
      */
     private void writeWholeLogTo(AbstractBuild build, OutputStream out)
-        throws IOException {
+        throws IOException, InterruptedException {
       long pos = 0;
 
+      // NOTE: We sleep interruptibly, so that aborting this build
+      // can be propagated to the build we are following.
       while (!build.getLogFile().exists()
           || build.getLogFile().isDirectory()) {
-        Uninterruptibles.sleepUninterruptibly(1, SECONDS);
+        SECONDS.sleep(1);
       }
 
       do {
@@ -295,7 +568,7 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
         if (logText.isComplete()) {
           break;
         }
-        Uninterruptibles.sleepUninterruptibly(1, SECONDS);
+        SECONDS.sleep(1);
       } while (true);
     }
 
@@ -315,56 +588,145 @@ public class YamlBuild<T extends AbstractProject & TopLevelItem>
       }
     }
 
+    /**
+     * If an earlier build (of this project, or of a sibling branch)
+     * successfully built the same revision of the same DSL (with the same
+     * parameters), then point this build at that build's child build rather
+     * than building it again.
+     *
+     * @return the result of the earlier child build, or {@code null} if this
+     * build must go ahead.
+     */
+    @Nullable
+    private Result maybeAvoid(BuildListener listener, String key) {
+      final YamlProject<T> parent = YamlBuild.this.getParent();
+      final AvoidanceCache.Entry entry = parent.getAvoidanceCache().get(key);
+      if (entry == null) {
+        return null;
+      }
+      // The earlier child build (or its branch) may since have been
+      // discarded.
+      final YamlProject<?> owner =
+          parent.getAvoidanceSibling(entry.getProjectName());
+      final AbstractProject project = (owner == null) ? null
+          : owner.getItem(entry.getChildName());
+      final AbstractBuild build = (project == null) ? null
+          : project.getBuildByNumber(entry.getChildNumber());
+      if (build == null || build.getResult() != Result.SUCCESS) {
+        return null;
+      }
+
+      listener.getLogger().println(Messages.YamlBuild_Avoided(
+          ModelHyperlinkNote.encodeTo("/" + build.getUrl(),
+              build.getFullDisplayName())));
+      YamlBuild.this.addAction(new AvoidedAction(build));
+      // Point our history at the child build, even when a sibling branch
+      // owns it, so that we surface it (and its actions) as our delegate.
+      YamlBuild.this.addAction(new YamlHistoryAction(
+          (owner == parent) ? null : owner.getName(), project.getName(),
+          build.getNumber()));
+      // Our index only names children of our own.
+      if (owner == parent) {
+        parent.getBuildIndex().append(new BuildIndex.Record(
+            YamlBuild.this.getNumber(), project.getName(),
+            build.getNumber(), build.getResult(), build.getDuration()));
+      }
+      return build.getResult();
+    }
+
     /**
      * Determine whether a project exists for the json loaded from the DSL file.
      */
-    private AbstractProject getOrCreateProject(JSONObject json)
+    private AbstractProject getOrCreateProject(JSONObject json, String hash)
         throws IOException {
-      final String jsonText = json.toString();
-      final String hash = UnsignedLongs.toString(
-          Hashing.md5().hashString(jsonText, Charsets.UTF_8).asLong(), 16);
-
       final YamlProject<T> parent = YamlBuild.this.getParent();
       final YamlHistoryAction action =
           YamlHistoryAction.of(YamlBuild.this.getPreviousBuild());
-      // First build, there is no project to re-use
-      if (action == null) {
-        return newProject(json, hash);
+      // On the first build, there is no last project to re-use, and we
+      // mustn't re-use (or clean up) that of a sibling branch whose result
+      // the last build reused.
+      final AbstractProject candidate =
+          (action == null) ? null : action.getProject(parent);
+      final AbstractProject lastProject =
+          (candidate == null || candidate.getParent() != parent)
+          ? null : candidate;
+
+      // Reject restricted or unknown types before we re-use a child, whose
+      // restrictions or plugins may have since changed, or allocate a
+      // version for a new one.
+      parent.getModule().getBinder(parent).validate(json);
+
+      final AbstractProject project;
+      synchronized (parent.getCreationLock()) {
+        // If the last project had the same hash, then simply re-use it,
+        // otherwise look for a child with the same hash that a concurrent
+        // build has just created, before creating a new one.  We only re-use
+        // children newer than the last project, so that alternating between
+        // two DSLs still yields a linear history.
+        final AbstractProject existing = parent.getItemByHash(hash);
+        if (lastProject != null && lastProject.getName().endsWith(hash)) {
+          project = lastProject;
+        } else if (existing != null && (lastProject == null
+            || YamlProject.getVersion(existing)
+                > YamlProject.getVersion(lastProject))) {
+          project = existing;
+        } else {
+          project = newProject(json, hash);
+        }
       }
-      final AbstractProject lastProject = action.getProject(parent);
-      // If the last project had the same hash, then simply re-use it
-      if (lastProject.getName().endsWith(hash)) {
-        return lastProject;
+
+      // Shared children must be able to run for each of our concurrent
+      // builds.
+      if (parent.isConcurrentBuild() && !project.isConcurrentBuild()) {
+        project.setConcurrentBuild(true);
       }
 
       // If we aren't using the lastProject then we need to blow away its
-      // workspace and that of any of its descendants.
-      deleteWorkspaceRecursive(lastProject);
-
-      // Otherwise create a new one.
-      return newProject(json, hash);
+      // workspace and that of any of its descendants, unless a concurrent
+      // build is still using it.
+      if (lastProject != null && lastProject != project
+          && !lastProject.isBuilding() && !lastProject.isInQueue()) {
+        deleteWorkspaceRecursive(lastProject);
+      }
+      return project;
     }
 
     /** Instantiate a new project from the json loaded from the DSL file */
     private AbstractProject newProject(JSONObject json, String hash)
         throws IOException {
       final YamlProject<T> parent = YamlBuild.this.getParent();
+      // If a sibling has already bound this DSL under the same restrictions,
+      // clone its child rather than binding it all over again.
+      final String xml = BoundProjectCache.get(parent, hash);
+      final Binder binder = parent.getModule().getBinder(parent);
+
       final String displayName =
-          String.format("v%04d", parent.getItems().size());
+          String.format("v%04d", parent.nextVersion());
       final String jobName = String.format("%s-%s", displayName, hash);
-      final Binder binder = parent.getModule().getBinder(parent);
-      final T project = (T) binder.bindJob(parent, jobName, json);
+      final T project;
+      if (xml != null) {
+        project = (T) Items.XSTREAM2.fromXML(xml);
+        project.onLoad(parent, jobName);
+      } else {
+        project = (T) binder.bindJob(parent, jobName, json);
+
+        // Validate that the embedded project doesn't specify source control.
+        checkState(project.getScm() instanceof NullSCM,
+            Messages.YamlBuild_DSLWithSCMError());
+        BoundProjectCache.put(parent, hash, Items.XSTREAM2.toXML(project));
+        project.onCreatedFromScratch();
+      }
       project.setDisplayName(displayName);
 
-      // Validate that the embedded project doesn't specify source control,
-      // and instate our own DelegateSCM to inject our SCM into it.
-      checkState(project.getScm() instanceof NullSCM,
-          Messages.YamlBuild_DSLWithSCMError());
+      // Instate our own DelegateSCM to inject our SCM into the child.
       project.setScm(new DelegateSCM(YamlProject.class));
 
-      project.onCreatedFromScratch();
+      // Load the index before adding the child, so that it is only indexed
+      // the once.
+      final VersionIndex index = parent.getVersionIndex();
       parent.addItem(project);
       project.save();
+      index.add(project);
       ItemListener.fireOnCreated(project);
 
       checkNotNull(Jenkins.getInstance()).rebuildDependencyGraph();
@@ -15,25 +15,35 @@
  */
 package com.google.jenkins.plugins.dsl;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.SEVERE;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
 
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.jenkins.plugins.dsl.tag.YamlTransformProvider;
+import com.google.common.collect.MapMaker;
 import com.google.jenkins.plugins.dsl.util.Filter;
-import com.google.jenkins.plugins.dsl.util.JsonToYaml;
 
 import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Item;
 import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 import net.sf.json.JSONObject;
 
@@ -54,7 +64,7 @@ public class YamlDecorator extends ItemListener {
   /** {@inheritDoc} */
   @Override
   public void onUpdated(Item item) {
-    if (!(item instanceof AbstractProject)) {
+    if (!(item instanceof AbstractProject) || !isRegistered(item)) {
       return;
     }
 
@@ -63,7 +73,7 @@ public class YamlDecorator extends ItemListener {
       return;
     }
 
-    JSONObject json;
+    final JSONObject json;
     try {
       // Avoid the logic to throw and redirect to an error page
       // when "getSubmittedForm" is called with no form data.
@@ -74,30 +84,134 @@ public class YamlDecorator extends ItemListener {
       if (json == null) {
         return;
       }
-      // Scrub the object of a lot of the fluff that comes through
-      // as part of the form submission.
-      // TODO(mattmoor): Scrub the json (based on kind?)
-      json = Filter.object(json);
     } catch (ServletException e) {
       logger.log(SEVERE, e.getMessage(), e);
       return;
     }
+
+    // Scrub the object of a lot of the fluff that comes through as part of
+    // the form submission.  The submitted form is cached by the request (and
+    // so shared with any other listeners), so this single pass also gives us
+    // a copy of our own to hand off.
+    // TODO(mattmoor): Scrub the json (based on kind?)
+    final JSONObject filtered = Filter.object(json);
+
+    // Defer saving the form to our background worker, coalescing rapid
+    // successive saves of the same project into one export of the latest
+    // form.
     final AbstractProject project = (AbstractProject) item;
-    final JsonToYaml j2y = new JsonToYaml.Default(YamlTransformProvider.get());
+    if (pending.put(project, filtered) == null) {
+      exporter.schedule(new Runnable() {
+          @Override
+          public void run() {
+            export(project);
+          }
+        }, debounceMillis, MILLISECONDS);
+    }
+  }
+
+  /**
+   * @return whether the item is held by its parent, unlike e.g. the
+   * throwaway children that {@link YamlLinter} binds
+   */
+  private static boolean isRegistered(Item item) {
+    // Our worker has no authentication of its own, and the lookup hides
+    // items that the current user cannot read.
+    final SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+    try {
+      return item.getParent().getItem(item.getName()) == item;
+    } finally {
+      SecurityContextHolder.setContext(context);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onDeleted(Item item) {
+    // Don't let a pending export resurrect the project.
+    if (item instanceof AbstractProject) {
+      pending.remove(item);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLocationChanged(Item item, String oldFullName,
+      String newFullName) {
+    // Don't let a pending export save the project under its old name.
+    if (item instanceof AbstractProject) {
+      pending.remove(item);
+    }
+  }
+
+  /**
+   * Wait for all pending exports to complete, exporting them immediately
+   * instead of waiting out their delay.
+   */
+  @VisibleForTesting
+  static void flush() throws InterruptedException, ExecutionException {
+    exporter.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (AbstractProject project : pending.keySet()) {
+            export(project);
+          }
+        }
+      }).get();
+  }
+
+  /** Save the latest pending (filtered) form of a project. */
+  private static void export(AbstractProject project) {
+    final JSONObject json = pending.remove(project);
+    if (json == null) {
+      // This was coalesced into an earlier export.
+      return;
+    }
+    if (!isRegistered(project)) {
+      // The project was deleted or renamed since, and saving it now would
+      // write it back to where it used to be.
+      return;
+    }
+
     try {
       final YamlAction action = YamlAction.of(project);
 
       // The $class is used to recover the project type.
-      json.put("$class", item.getClass().getName());
+      json.put("$class", project.getClass().getName());
       // The name is specified by the container YamlProject, but this is
       // too generic a term to filter out above.
       json.put("name", null);
 
-      action.setYaml(j2y.toYaml(json.toString()));
+      // We only store the JSON, the Yaml is rendered when it is viewed.
+      action.setJson(json.toString());
 
       project.save();
     } catch (IOException e) {
       logger.log(SEVERE, e.getMessage(), e);
+    } catch (RuntimeException e) {
+      // Don't let one bad project kill our worker.
+      logger.log(SEVERE, e.getMessage(), e);
     }
   }
+
+  /** How long we wait for further saves of a project before exporting. */
+  @VisibleForTesting
+  static long debounceMillis = Long.getLong(
+      YamlDecorator.class.getName() + ".debounceMillis", 500);
+
+  /**
+   * The latest form submitted for each project awaiting export.  This is
+   * weakly keyed, so that we don't pin projects that are dropped without
+   * notifying us (e.g. when Jenkins reloads its configuration).
+   */
+  private static final ConcurrentMap<AbstractProject, JSONObject> pending =
+      new MapMaker().weakKeys().makeMap();
+
+  /**
+   * The single worker on which we export, so that exports of the same
+   * project never race.
+   */
+  private static final ScheduledExecutorService exporter =
+      Executors.newSingleThreadScheduledExecutor(new NamingThreadFactory(
+          new DaemonThreadFactory(), YamlDecorator.class.getSimpleName()));
 }
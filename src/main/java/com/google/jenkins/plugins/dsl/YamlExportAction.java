@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerResponse;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Strings;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.RootAction;
+
+import jenkins.model.Jenkins;
+
+/**
+ * This hidden action exposes {@link YamlExporter} at {@code /yamlExport},
+ * streaming a zip of the Yaml DSL for every project on the instance, or
+ * within the folder named by the {@code folder} query parameter.
+ */
+@Extension
+public class YamlExportAction implements RootAction {
+  /** {@inheritDoc} */
+  @Override
+  public String getIconFileName() {
+    // Hidden from the UI.
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getDisplayName() {
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getUrlName() {
+    return "yamlExport";
+  }
+
+  /** Stream the export of the requested folder (or instance). */
+  public void doIndex(StaplerResponse rsp,
+      @Nullable @QueryParameter String folder)
+      throws IOException, InterruptedException {
+    final ItemGroup root = resolve(folder);
+    if (root == null) {
+      rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    rsp.setContentType("application/zip");
+    rsp.setHeader("Content-Disposition",
+        "attachment; filename=yaml-export.zip");
+    YamlExporter.export(root, rsp.getOutputStream());
+  }
+
+  /**
+   * @return the item group named by {@code folder}, or the whole instance if
+   * none is named, or {@code null} if it isn't a readable item group.
+   */
+  @Nullable
+  static ItemGroup resolve(@Nullable String folder) {
+    final Jenkins jenkins = checkNotNull(Jenkins.getInstance());
+    if (Strings.isNullOrEmpty(folder)) {
+      return jenkins;
+    }
+    final Item item = jenkins.getItemByFullName(folder);
+    return (item instanceof ItemGroup) ? (ItemGroup) item : null;
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.jenkins.plugins.dsl.util.Unbinder;
+
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Streams the Yaml DSL of every project within an {@link ItemGroup} (e.g. a
+ * folder, or the whole instance) as a zip archive, with an entry for each
+ * project at {@code <full name>/.jenkins.yaml}.
+ * <p>
+ * Projects are rendered in parallel, but we only ever hold a bounded window
+ * of rendered projects in memory, and entries are written in the order in
+ * which the projects are walked.
+ * <p>
+ * A project's DSL is rendered from the form data captured by
+ * {@link YamlDecorator} when it was last configured through the UI, or for
+ * projects never configured that way (e.g. created from {@code config.xml}),
+ * from the JSON that {@link Unbinder} reconstructs from its configuration.
+ * Projects we fail to render are listed in a trailing {@code SKIPPED.txt}
+ * entry.
+ * <p>
+ * NOTE: The children of a {@link YamlProject} are omitted, since their DSL
+ * is the one their parent checks out.
+ */
+final class YamlExporter {
+  private static final Logger logger = Logger.getLogger(
+      YamlExporter.class.getName());
+
+  /** Stream the Yaml DSL of the projects within {@code root} as a zip. */
+  static void export(ItemGroup root, OutputStream out)
+      throws IOException, InterruptedException {
+    final ZipOutputStream zip = new ZipOutputStream(out);
+    final Deque<Rendering> window = new ArrayDeque<Rendering>();
+    final List<String> skipped = Lists.newArrayList();
+
+    for (final AbstractProject project :
+             Items.getAllItems(root, AbstractProject.class)) {
+      if (!project.hasPermission(Item.EXTENDED_READ)
+          || project.getParent() instanceof YamlProject) {
+        continue;
+      }
+
+      window.add(new Rendering(project.getFullName(),
+          POOL.submit(new Callable<String>() {
+              @Override
+              public String call() {
+                return render(project);
+              }
+            })));
+      if (window.size() >= WINDOW_SIZE) {
+        write(zip, window.remove(), skipped);
+      }
+    }
+    while (!window.isEmpty()) {
+      write(zip, window.remove(), skipped);
+    }
+
+    if (!skipped.isEmpty()) {
+      zip.putNextEntry(new ZipEntry("SKIPPED.txt"));
+      zip.write(Joiner.on('\n').join(skipped).getBytes(UTF_8));
+      zip.closeEntry();
+    }
+    zip.finish();
+    zip.flush();
+  }
+
+  /** @return the Yaml DSL of the given project, or {@code null} */
+  @Nullable
+  private static String render(AbstractProject<?, ?> project) {
+    final YamlAction action = project.getAction(YamlAction.class);
+    final String yaml = (action == null) ? null : action.getYaml();
+    if (yaml != null) {
+      return yaml;
+    }
+    try {
+      return YamlAction.getRenderer().toYaml(
+          Unbinder.unbind(project).toString());
+    } catch (RuntimeException e) {
+      // A project we can't reconstruct shouldn't sink the whole export.
+      logger.log(Level.WARNING, "Unable to reconstruct the DSL of "
+          + project.getFullName(), e);
+      return null;
+    } catch (LinkageError e) {
+      // e.g. its describables come from a plugin that has since gone.
+      logger.log(Level.WARNING, "Unable to reconstruct the DSL of "
+          + project.getFullName(), e);
+      return null;
+    }
+  }
+
+  /** Write the next rendered project to the archive. */
+  private static void write(ZipOutputStream zip, Rendering rendering,
+      List<String> skipped) throws IOException, InterruptedException {
+    final String yaml;
+    try {
+      yaml = rendering.yaml.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+    if (yaml == null) {
+      skipped.add(rendering.name);
+      return;
+    }
+    zip.putNextEntry(new ZipEntry(
+        rendering.name + "/" + YamlProject.DEFAULT_YAML));
+    zip.write(yaml.getBytes(UTF_8));
+    zip.closeEntry();
+  }
+
+  /** A project's Yaml, which may still be rendering. */
+  private static class Rendering {
+    public Rendering(String name, Future<String> yaml) {
+      this.name = name;
+      this.yaml = yaml;
+    }
+
+    public final String name;
+    public final Future<String> yaml;
+  }
+
+  /** The number of threads on which we render. */
+  private static final int POOL_SIZE = Integer.getInteger(
+      YamlExporter.class.getName() + ".poolSize",
+      Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+  /** The bound on how many rendered projects we hold in memory at once. */
+  private static final int WINDOW_SIZE = 4 * POOL_SIZE;
+
+  /** The shared pool on which we render. */
+  private static final ExecutorService POOL = Executors.newFixedThreadPool(
+      POOL_SIZE, new NamingThreadFactory(new DaemonThreadFactory(),
+          YamlExporter.class.getSimpleName()));
+
+  /** Do not instantiate this class. */
+  private YamlExporter() {}
+}
@@ -35,6 +35,17 @@ import hudson.model.InvisibleAction;
  */
 public class YamlHistoryAction extends InvisibleAction {
   public YamlHistoryAction(String projectName, int buildNumber) {
+    this(null /* ownerName */, projectName, buildNumber);
+  }
+
+  /**
+   * @param ownerName the name of the sibling branch whose nested project
+   * built on our behalf, or {@code null} if the project is our own.
+   * @see YamlProject#isBuildAvoidance()
+   */
+  public YamlHistoryAction(@Nullable String ownerName, String projectName,
+      int buildNumber) {
+    this.ownerName = ownerName;
     this.projectName = checkNotNull(projectName);
     this.buildNumber = buildNumber;
   }
@@ -42,14 +53,26 @@ public class YamlHistoryAction extends InvisibleAction {
   /**
    * Fetch the nested project to which our owning {@link YamlBuild}
    * delegated execution.
+   *
+   * @return the project, or null if it (or the branch owning it) no longer
+   * exists
    */
+  @Nullable
   public AbstractProject getProject(YamlProject<?> project) {
-    return project.getItem(projectName);
+    final YamlProject<?> owner = project.getAvoidanceSibling(ownerName);
+    return (owner == null) ? null : owner.getItem(projectName);
   }
 
-  /** Fetch the nested project's build recording our delegated execution */
+  /**
+   * Fetch the nested project's build recording our delegated execution,
+   * which our project's {@link BuildIndex} names once it has completed.
+   *
+   * @return the build, or null if it (or its project) no longer exists
+   */
+  @Nullable
   public AbstractBuild getBuild(YamlProject<?> project) {
-    return getProject(project).getBuildByNumber(buildNumber);
+    final AbstractProject nested = getProject(project);
+    return (nested == null) ? null : nested.getBuildByNumber(buildNumber);
   }
 
   /**
@@ -70,6 +93,9 @@ public class YamlHistoryAction extends InvisibleAction {
     }
   }
 
+  /** @see #YamlHistoryAction(String, String, int) */
+  @Nullable
+  private final String ownerName;
   private final String projectName;
   private final int buildNumber;
 }
\ No newline at end of file
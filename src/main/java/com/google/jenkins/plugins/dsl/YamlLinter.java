@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.kohsuke.stapler.StaplerResponse;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+import com.google.jenkins.plugins.dsl.util.Binder;
+import com.google.jenkins.plugins.dsl.util.PluginGeneration;
+
+import hudson.BulkChange;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
+import hudson.model.TopLevelItem;
+import hudson.scm.NullSCM;
+import hudson.triggers.Trigger;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+/**
+ * Validates a YAML DSL for a {@link YamlProject} without creating a child
+ * for it.  The DSL is translated with the live transforms, validated against
+ * the project's restrictions and bound into a throwaway child that is never
+ * saved, or added to the project.
+ * <p>
+ * The result is a {@link JSONObject} of the form:
+ * <pre><code>
+ *   { "valid": false,
+ *     "errors": [ { "type": "RestrictedTypeException", "message": "..." } ] }
+ * </code></pre>
+ * Results are cached by the hash of the DSL (and the same restriction scope
+ * as {@link BoundProjectCache}), so that repeated lint requests are cheap.
+ */
+final class YamlLinter {
+  /** @return the result of linting the given DSL for {@code project} */
+  static JSONObject lint(YamlProject<?> project, String yaml) {
+    final String hash = Hashing.md5().hashString(yaml, Charsets.UTF_8)
+        .toString();
+    final String key = BoundProjectCache.key(project, hash);
+
+    synchronized (RESULTS) {
+      final PluginGeneration current = PluginGeneration.current();
+      if (!current.equals(generation)) {
+        RESULTS.invalidateAll();
+        generation = current;
+      }
+    }
+
+    JSONObject result = RESULTS.getIfPresent(key);
+    if (result == null) {
+      result = doLint(project, yaml);
+      RESULTS.put(key, result);
+    }
+    // Hand out copies, since JSONObject is mutable.
+    return JSONObject.fromObject(result);
+  }
+
+  /**
+   * @return the result of linting the given DSL for the branches of
+   * {@code project}
+   */
+  static JSONObject lint(YamlMultiBranchProject<?> project, String yaml)
+      throws IOException {
+    // Lint against a stand-in for a branch, built and decorated just as the
+    // project's factory builds a new branch.
+    final BulkChange bc = new BulkChange(BulkChange.ALL);
+    try {
+      final YamlProject branch = project.getProjectFactory().decorate(
+          new YamlProject(project, LINT_NAME, null /* module */));
+      return lint(branch, yaml);
+    } finally {
+      bc.abort();
+    }
+  }
+
+  /** Write the result of a lint as the response to an HTTP request. */
+  static void respond(StaplerResponse rsp, JSONObject result)
+      throws IOException {
+    rsp.setContentType("application/json;charset=UTF-8");
+    rsp.getWriter().print(result.toString());
+  }
+
+  /** @return the entire contents of the stream, as UTF-8 */
+  static String read(InputStream stream) throws IOException {
+    return CharStreams.toString(new InputStreamReader(stream, Charsets.UTF_8));
+  }
+
+  /** Flush all cached results. */
+  @VisibleForTesting
+  static void clear() {
+    RESULTS.invalidateAll();
+  }
+
+  /** Perform the actual (uncached) lint. */
+  private static JSONObject doLint(YamlProject<?> project, String yaml) {
+    final JSONArray errors = new JSONArray();
+    // Veto any attempt to save the throwaway child (or anything else).
+    final BulkChange bc = new BulkChange(BulkChange.ALL);
+    try {
+      final JSONObject json = (JSONObject) JSONSerializer.toJSON(
+          project.getModule().getYamlToJson().toJson(yaml));
+
+      final Binder binder = project.getModule().getBinder(project);
+      binder.validate(json);
+
+      // NOTE: Binding fires ItemListener#onUpdated for our throwaway, which
+      // is never added to the project, so listeners that only act on the
+      // items that their parent holds (e.g. YamlDecorator) ignore it.
+      final Job job = binder.bindJob((YamlProject) project, LINT_NAME, json);
+      if (job instanceof AbstractProject) {
+        final AbstractProject child = (AbstractProject) job;
+        // Binding starts triggers, which our throwaway mustn't keep.
+        for (Object trigger : child.getTriggers().values()) {
+          ((Trigger) trigger).stop();
+        }
+        if (!(child.getScm() instanceof NullSCM)) {
+          errors.add(error(IllegalStateException.class.getSimpleName(),
+              Messages.YamlBuild_DSLWithSCMError()));
+        }
+      }
+      if (!(job instanceof TopLevelItem)) {
+        errors.add(error(IllegalStateException.class.getSimpleName(),
+            Messages.YamlLinter_NotTopLevel(job.getClass().getName())));
+      }
+    } catch (RuntimeException e) {
+      errors.add(error(e));
+    } catch (IOException e) {
+      errors.add(error(e));
+    } finally {
+      bc.abort();
+    }
+
+    final JSONObject result = new JSONObject();
+    result.put("valid", errors.isEmpty());
+    result.put("errors", errors);
+    return result;
+  }
+
+  /** @return the structured form of an error encountered while linting */
+  private static JSONObject error(Exception e) {
+    // Surface the root cause, which is what the user needs to fix.
+    Throwable cause = e;
+    while (cause.getCause() != null && cause.getCause() != cause) {
+      cause = cause.getCause();
+    }
+    return error(cause.getClass().getSimpleName(),
+        String.valueOf(cause.getMessage()));
+  }
+
+  private static JSONObject error(String type, String message) {
+    final JSONObject error = new JSONObject();
+    error.put("type", type);
+    error.put("message", message);
+    return error;
+  }
+
+  /** The name we give the throwaway items we lint with. */
+  private static final String LINT_NAME = "lint";
+
+  /** The bound on how many lint results we retain. */
+  private static final int MAX_SIZE = Integer.getInteger(
+      YamlLinter.class.getName() + ".maxSize", 256);
+
+  private static final Cache<String, JSONObject> RESULTS =
+      CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build();
+
+  /** The generation of plugins for which our results are valid. */
+  private static PluginGeneration generation;
+
+  /** Do not instantiate this class. */
+  private YamlLinter() {}
+}
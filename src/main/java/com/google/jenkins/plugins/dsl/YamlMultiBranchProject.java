@@ -18,6 +18,7 @@ package com.google.jenkins.plugins.dsl;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.annotation.Nonnull;
 import javax.servlet.ServletException;
@@ -26,6 +27,7 @@ import org.acegisecurity.Authentication;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,6 +40,7 @@ import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Descriptor;
 import hudson.model.Descriptor.FormException;
+import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Queue;
 import hudson.model.TopLevelItem;
@@ -124,6 +127,45 @@ public class YamlMultiBranchProject<T extends AbstractProject & TopLevelItem>
     addView(View.create(req, rsp, this));
   }
 
+  /**
+   * Validates the YAML DSL in the body of the request as our branches
+   * would, without creating anything, and responds with the result as JSON.
+   *
+   * @see YamlLinter
+   */
+  @RequirePOST
+  public void doLint(StaplerRequest req, StaplerResponse rsp)
+      throws IOException {
+    checkPermission(Item.CONFIGURE);
+    YamlLinter.respond(rsp,
+        YamlLinter.lint(this, YamlLinter.read(req.getInputStream())));
+  }
+
+  /**
+   * Retrieves the record of which child builds successfully built each
+   * revision of our branches' DSL, which our branches share so that one
+   * branch may reuse the result of another for an identical revision.
+   *
+   * @see YamlProject#isBuildAvoidance()
+   */
+  AvoidanceCache getAvoidanceCache() {
+    final AvoidanceCache cache = avoidanceCache;
+    // Renaming us (or our parent) moves our directory, cache and all.
+    if (cache == null || !cache.isIn(getRootDir())) {
+      // Racing loads are harmless, since only one of them is ever used.
+      avoidanceCacheSetter.compareAndSet(this, cache,
+          AvoidanceCache.load(getRootDir()));
+    }
+    return avoidanceCache;
+  }
+
+  /** @see #getAvoidanceCache */
+  private transient volatile AvoidanceCache avoidanceCache;
+  private static final AtomicReferenceFieldUpdater<YamlMultiBranchProject,
+      AvoidanceCache> avoidanceCacheSetter =
+          AtomicReferenceFieldUpdater.newUpdater(YamlMultiBranchProject.class,
+              AvoidanceCache.class, "avoidanceCache");
+
   /** Makes sure the view name is available */
   public FormValidation doCheckViewName(@QueryParameter String value) {
     if (Strings.isNullOrEmpty(value)) {
@@ -16,7 +16,9 @@
 package com.google.jenkins.plugins.dsl;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
@@ -24,9 +26,12 @@ import javax.servlet.ServletException;
 
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
@@ -39,10 +44,12 @@ import com.google.jenkins.plugins.dsl.tag.YamlTag;
 import com.google.jenkins.plugins.dsl.tag.YamlTags;
 
 import hudson.Extension;
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.Descriptor;
 import hudson.model.Descriptor.FormException;
+import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Queue;
 import hudson.model.SCMedItem;
@@ -126,8 +133,10 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
 
   /** {@inheritDoc} */
   @Override
-  public void onDeleted(T item) {
-    throw new UnsupportedOperationException();
+  public void onDeleted(T item) throws IOException {
+    super.onDeleted(item);
+    // Don't list the deleted version in our history.
+    getVersionIndex().remove(item.getName());
   }
 
   /** {@inheritDoc} */
@@ -145,12 +154,26 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
   /** {@inheritDoc} */
   @Override
   public List<Action> getActions() {
-    YamlHistoryAction action = YamlHistoryAction.of(getLastBuild());
-    if (action == null) {
+    final AbstractProject project = getLastProject();
+    if (project == null) {
       return super.getActions();
     }
-    // Delegate to the nested build.
-    return action.getProject(this).getActions();
+    // Delegate to the nested project.
+    return project.getActions();
+  }
+
+  /**
+   * Validates the YAML DSL in the body of the request against this project,
+   * without creating a child for it, and responds with the result as JSON.
+   *
+   * @see YamlLinter
+   */
+  @RequirePOST
+  public void doLint(StaplerRequest req, StaplerResponse rsp)
+      throws IOException {
+    checkPermission(Item.CONFIGURE);
+    YamlLinter.respond(rsp,
+        YamlLinter.lint(this, YamlLinter.read(req.getInputStream())));
   }
 
   /** {@inheritDoc} */
@@ -201,9 +224,100 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
       this.primaryViewName = lastProjectView.getViewName();
     }
 
+    if (this.creationLock == null) {
+      this.creationLock = new Object();
+    }
+
+    // (Re)load our indices lazily, once our children are loaded.
+    this.versionIndex = null;
+    this.buildIndex = null;
+    this.avoidanceCache = null;
+
+    // Never reissue the version of a child we still have, e.g. if we were
+    // saved before we tracked the next version number, or before reserving
+    // the newest child's.  Since children may be deleted, count from the
+    // newest of them, not how many of them there are.
+    for (T item : projects.values()) {
+      if (this.nextVersion <= getVersion(item)) {
+        this.nextVersion = getVersion(item) + 1;
+      }
+    }
+
     super.init();
   }
 
+  /**
+   * Atomically reserves the version number to give the next child project we
+   * instantiate, so that concurrent builds never hand out the same version.
+   */
+  public int nextVersion() {
+    return nextVersionUpdater.getAndIncrement(this);
+  }
+
+  /**
+   * @return the version number that {@link #nextVersion} would reserve,
+   * without reserving it.
+   */
+  @VisibleForTesting
+  int peekNextVersion() {
+    return nextVersion;
+  }
+
+  /** @see #nextVersion */
+  private volatile int nextVersion;
+  private static final AtomicIntegerFieldUpdater<YamlProject>
+      nextVersionUpdater = AtomicIntegerFieldUpdater.newUpdater(
+          YamlProject.class, "nextVersion");
+
+  /**
+   * Finds the newest child project that was instantiated from a DSL with the
+   * given hash, which may have been created by a concurrent build.
+   *
+   * @return the child, or null if no child has the given hash
+   */
+  @Nullable
+  public T getItemByHash(String hash) {
+    final String suffix = "-" + checkNotNull(hash);
+    T result = null;
+    // NOTE: Our children are sorted by name, but e.g. v10000 sorts before
+    // v9999, so compare their parsed versions instead.
+    for (T item : getItems()) {
+      if (item.getName().endsWith(suffix)
+          && (result == null || getVersion(item) > getVersion(result))) {
+        result = item;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the version with which the given child's name leads, e.g.
+   * {@code 12} for {@code v0012-<hash>}, or {@code -1} if it has none.
+   */
+  static int getVersion(Item child) {
+    final String name = child.getName();
+    final int end = name.indexOf('-');
+    if (!name.startsWith("v") || end < 0) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(name.substring(1, end));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * The lock under which {@link YamlBuild}s look up or create the child
+   * for their DSL, so that concurrent builds of the same DSL share one child.
+   */
+  Object getCreationLock() {
+    return creationLock;
+  }
+
+  /** @see #getCreationLock */
+  private transient Object creationLock;
+
   /**
    * Retrieves our specialized {@link JobHistoryView} for displaying the series
    * of jobs we have instantiated as the underlying DSL has changed.
@@ -215,6 +329,118 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
   /** @see #getJobHistoryView */
   private JobHistoryView jobHistoryView;
 
+  /**
+   * Retrieves the compact, newest-first index of the versions we have
+   * instantiated, which backs our {@link JobHistoryView}.
+   */
+  public VersionIndex getVersionIndex() {
+    VersionIndex index = versionIndex;
+    // Renaming us (or our parent) moves our directory, index and all.
+    if (index == null || !index.isIn(getRootDir())) {
+      synchronized (getCreationLock()) {
+        index = versionIndex;
+        if (index == null || !index.isIn(getRootDir())) {
+          index = versionIndex = VersionIndex.load(this);
+        }
+      }
+    }
+    return index;
+  }
+
+  /** @see #getVersionIndex */
+  private transient volatile VersionIndex versionIndex;
+
+  /**
+   * Retrieves the index from our build numbers to the child builds to which
+   * they delegated.
+   */
+  public BuildIndex getBuildIndex() {
+    BuildIndex index = buildIndex;
+    // Renaming us (or our parent) moves our directory, index and all.
+    if (index == null || !index.isIn(getRootDir())) {
+      index = buildIndex = BuildIndex.open(getRootDir());
+    }
+    return index;
+  }
+
+  /**
+   * Surfaces our {@link BuildIndex} to the remote API, so that clients may
+   * map our builds to their child builds without our loading any build.
+   */
+  @Exported
+  public List<BuildIndex.Record> getChildBuilds() {
+    return getBuildIndex().getAll();
+  }
+
+  /** @see #getBuildIndex */
+  private transient volatile BuildIndex buildIndex;
+
+  /**
+   * Retrieves the record of which child builds successfully built each
+   * revision of our DSL, which backs {@link #isBuildAvoidance}.  The
+   * branches of a {@link YamlMultiBranchProject} share their parent's.
+   */
+  AvoidanceCache getAvoidanceCache() {
+    if (getParent() instanceof YamlMultiBranchProject) {
+      return ((YamlMultiBranchProject<?>) getParent()).getAvoidanceCache();
+    }
+    AvoidanceCache cache = avoidanceCache;
+    // Renaming us (or our parent) moves our directory, cache and all.
+    if (cache == null || !cache.isIn(getRootDir())) {
+      synchronized (getCreationLock()) {
+        cache = avoidanceCache;
+        if (cache == null || !cache.isIn(getRootDir())) {
+          cache = avoidanceCache = AvoidanceCache.load(getRootDir());
+        }
+      }
+    }
+    return cache;
+  }
+
+  /** @see #getAvoidanceCache */
+  private transient volatile AvoidanceCache avoidanceCache;
+
+  /**
+   * @return the project sharing our {@link AvoidanceCache} with the given
+   * name (which may be us), or {@code null} if there is no such project.
+   */
+  @Nullable
+  YamlProject<?> getAvoidanceSibling(@Nullable String name) {
+    if (name == null || name.equals(getName())) {
+      return this;
+    }
+    if (getParent() instanceof YamlMultiBranchProject) {
+      return ((YamlMultiBranchProject<?>) getParent()).getItem(name);
+    }
+    return null;
+  }
+
+  /**
+   * Finds the child build to which our build with the given number
+   * delegated, consulting our {@link BuildIndex} before falling back on
+   * loading the build itself.
+   *
+   * @return the child build, or null if there isn't one
+   */
+  @Nullable
+  public AbstractBuild getChildBuild(int number) {
+    final BuildIndex.Record record = getBuildIndex().get(number);
+    if (record != null) {
+      return getChildBuild(record);
+    }
+    final YamlHistoryAction action =
+        YamlHistoryAction.of(getBuildByNumber(number));
+    return (action == null) ? null : action.getBuild(this);
+  }
+
+  /** @return the child build the given record names, if it still exists */
+  @Nullable
+  AbstractBuild getChildBuild(BuildIndex.Record record) {
+    final AbstractProject child = getItem(record.getChildName());
+    return (child == null) ? null
+        : child.getBuildByNumber(record.getChildNumber());
+  }
+
   /**
    * Retrieves our specialized {@link LastProjectView} for displaying an
    * embedded view of the last project that was instantiated for the
@@ -229,15 +455,54 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
 
   /** Retrieves the latest version of our embedded project. */
   public AbstractProject getLastProject() {
-    final YamlHistoryAction action =
-        YamlHistoryAction.of(getLastBuild());
+    final YamlBuild<T> build = getLastBuild();
     // No builds yet.
-    if (action == null) {
+    if (build == null) {
       return null;
     }
-    return action.getProject(this);
+    final LastProject cached = lastProject;
+    if (cached != null && cached.build.get() == build
+        && cached.project.getParent().getItem(cached.project.getName())
+            == cached.project) {
+      return cached.project;
+    }
+
+    final AbstractProject project;
+    final BuildIndex.Record record = build.getChildRecord();
+    if (record != null) {
+      project = getItem(record.getChildName());
+    } else {
+      final YamlHistoryAction action = YamlHistoryAction.of(build);
+      // The last build hasn't delegated yet.
+      if (action == null) {
+        return null;
+      }
+      project = action.getProject(this);
+    }
+    if (project != null) {
+      lastProject = new LastProject(build, project);
+    }
+    return project;
+  }
+
+  /**
+   * The project to which a given build of ours delegated.  We only hold the
+   * build weakly, so that we don't keep it (and its log, actions, etc.)
+   * loaded, but the project is one of our items anyway.
+   */
+  private static class LastProject {
+    public LastProject(YamlBuild<?> build, AbstractProject project) {
+      this.build = new WeakReference<YamlBuild<?>>(build);
+      this.project = project;
+    }
+
+    public final WeakReference<YamlBuild<?>> build;
+    public final AbstractProject project;
   }
 
+  /** @see #getLastProject */
+  private transient volatile LastProject lastProject;
+
   /** {@inheritDoc} */
   @Override
   protected void submit(StaplerRequest req, StaplerResponse rsp)
@@ -247,6 +512,8 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
     final JSONObject json = req.getSubmittedForm();
 
     setYamlPath(json.optString("yamlPath"));
+    setLatestWins(json.optBoolean("latestWins"));
+    setBuildAvoidance(json.optBoolean("buildAvoidance"));
 
     if (json.containsKey("restriction")) {
       setRestriction(req.bindJSON(AbstractRestriction.class,
@@ -270,6 +537,44 @@ public class YamlProject<T extends AbstractProject & TopLevelItem>
 
   private String yamlPath;
 
+  /**
+   * @return whether newer builds of this project supersede older ones, which
+   * are cancelled while queued and aborted while running.
+   * @see LatestWinsQueueListener
+   */
+  public boolean isLatestWins() {
+    return latestWins;
+  }
+
+  /** Sets whether newer builds of this project supersede older ones. */
+  public YamlProject<T> setLatestWins(boolean latestWins) throws IOException {
+    this.latestWins = latestWins;
+    save();
+    return this;
+  }
+
+  private volatile boolean latestWins;
+
+  /**
+   * @return whether builds of a source revision and DSL that an earlier
+   * build already built successfully simply reuse that build's result,
+   * rather than building the same thing again.
+   * @see AvoidanceCache
+   */
+  public boolean isBuildAvoidance() {
+    return buildAvoidance;
+  }
+
+  /** Sets whether builds of previously built revisions are avoided. */
+  public YamlProject<T> setBuildAvoidance(boolean buildAvoidance)
+      throws IOException {
+    this.buildAvoidance = buildAvoidance;
+    save();
+    return this;
+  }
+
+  private volatile boolean buildAvoidance;
+
   /** Boilerplate extension code */
   @Extension
   public static class DescriptorImpl extends AbstractProjectDescriptor {
@@ -24,6 +24,7 @@ import java.util.logging.Logger;
 import javax.annotation.Nullable;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -87,6 +88,37 @@ public class YamlProjectFactory<T extends AbstractProject & TopLevelItem>
   @Nullable
   private final List<Publisher> publishers;
 
+  /**
+   * @return whether newer builds of each branch supersede older ones
+   * @see YamlProject#isLatestWins()
+   */
+  public boolean isLatestWins() {
+    return latestWins;
+  }
+
+  /** @see #isLatestWins() */
+  @DataBoundSetter
+  public void setLatestWins(boolean latestWins) {
+    this.latestWins = latestWins;
+  }
+  private boolean latestWins;
+
+  /**
+   * @return whether builds of each branch avoid rebuilding revisions that
+   * were already built successfully
+   * @see YamlProject#isBuildAvoidance()
+   */
+  public boolean isBuildAvoidance() {
+    return buildAvoidance;
+  }
+
+  /** @see #isBuildAvoidance() */
+  @DataBoundSetter
+  public void setBuildAvoidance(boolean buildAvoidance) {
+    this.buildAvoidance = buildAvoidance;
+  }
+  private boolean buildAvoidance;
+
   /** {@inheritDoc} */
   @Override
   public YamlProject<T> newInstance(final Branch branch) {
@@ -122,6 +154,8 @@ public class YamlProjectFactory<T extends AbstractProject & TopLevelItem>
     try {
       project.setYamlPath(getYamlPath());
       project.setRestriction(getRestriction());
+      project.setLatestWins(isLatestWins());
+      project.setBuildAvoidance(isBuildAvoidance());
 
       if (publishers != null) {
         project.getPublishersList().clear();
@@ -16,10 +16,15 @@
 package com.google.jenkins.plugins.dsl.restrict;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.jenkins.plugins.dsl.util.PluginGeneration;
 
 import hudson.PluginManager;
 import hudson.PluginWrapper;
@@ -31,19 +36,109 @@ public abstract class AbstractPluginRestriction extends AbstractRestriction {
   /** {@inheritDoc} */
   @Override
   public final ClassLoader getClassLoader(RestrictedProject project) {
-    final ClassLoader inner = getBaseClassLoader(project);
-
-    return new ClassLoader() {
-      @Override
-      public Class loadClass(String className) throws ClassNotFoundException {
-        final Class clazz = inner.loadClass(className);
-        if (shouldFilter(clazz)) {
-          throw new RestrictedTypeException(
-              Messages.AbstractPluginRestriction_Filtered(clazz.getName()));
+    // Flatten the plugin restrictions of our ancestors into a single layer
+    // with ours, stopping at the first restriction that isn't based on
+    // plugins, which we layer on top of.
+    final ImmutableList.Builder<AbstractPluginRestriction> chain =
+        ImmutableList.builder();
+    chain.add(this);
+    ClassLoader inner = null;
+    for (RestrictedProject parent = getRestrictedParent(project);
+         parent != null; parent = getRestrictedParent(parent)) {
+      final AbstractRestriction restriction = parent.getRestriction();
+      if (restriction instanceof AbstractPluginRestriction) {
+        chain.add((AbstractPluginRestriction) restriction);
+      } else if (!(restriction instanceof NoRestriction)) {
+        inner = restriction.getClassLoader(parent);
+        break;
+      }
+    }
+    if (inner == null) {
+      inner = getUnrestrictedClassLoader();
+    }
+
+    // Our loader lives until a restriction in the chain is reconfigured
+    // (which replaces its instance), so that its verdicts may be reused
+    // across binds.
+    final List<AbstractPluginRestriction> restrictions = chain.build();
+    RestrictedClassLoader loader = this.loader;
+    if (loader == null || loader.inner != inner
+        || !loader.restrictions.equals(restrictions)) {
+      loader = new RestrictedClassLoader(inner, restrictions);
+      this.loader = loader;
+    }
+    return loader;
+  }
+  private transient volatile RestrictedClassLoader loader;
+
+  /**
+   * The class loader through which we filter for a chain of plugin
+   * restrictions, which caches whether each plugin, and each class it has
+   * loaded, is allowed.  The verdicts are flushed whenever the set of loaded
+   * plugins changes.
+   */
+  private class RestrictedClassLoader extends ClassLoader {
+    public RestrictedClassLoader(ClassLoader inner,
+        List<AbstractPluginRestriction> restrictions) {
+      this.inner = checkNotNull(inner);
+      this.restrictions = checkNotNull(restrictions);
+    }
+
+    @Override
+    public Class loadClass(String className) throws ClassNotFoundException {
+      final Class clazz = inner.loadClass(className);
+      if (shouldFilter(clazz)) {
+        throw new RestrictedTypeException(
+            Messages.AbstractPluginRestriction_Filtered(clazz.getName()));
+      }
+      return clazz;
+    }
+
+    private boolean shouldFilter(Class clazz) {
+      final PluginGeneration current = PluginGeneration.current();
+      synchronized (verdicts) {
+        if (!current.equals(generation)) {
+          verdicts.clear();
+          allowed.clear();
+          for (PluginWrapper plugin : getPluginManager().getPlugins()) {
+            isAllowed(plugin);
+          }
+          generation = current;
         }
-        return clazz;
       }
-    };
+
+      Boolean verdict = verdicts.get(clazz);
+      if (verdict == null) {
+        final PluginWrapper wrapper = getPluginManager().whichPlugin(clazz);
+        verdict = (wrapper != null) && !isAllowed(wrapper);
+        verdicts.put(clazz, verdict);
+      }
+      return verdict;
+    }
+
+    /** @return whether every restriction in our chain allows the plugin */
+    private boolean isAllowed(PluginWrapper plugin) {
+      Boolean verdict = allowed.get(plugin.getShortName());
+      if (verdict == null) {
+        verdict = true;
+        for (AbstractPluginRestriction restriction : restrictions) {
+          if (!restriction.isPluginAllowed(plugin)) {
+            verdict = false;
+            break;
+          }
+        }
+        allowed.put(plugin.getShortName(), verdict);
+      }
+      return verdict;
+    }
+
+    private final ClassLoader inner;
+    private final List<AbstractPluginRestriction> restrictions;
+    private final ConcurrentMap<String, Boolean> allowed =
+        Maps.newConcurrentMap();
+    private final ConcurrentMap<Class, Boolean> verdicts =
+        new MapMaker().weakKeys().makeMap();
+    private PluginGeneration generation;
   }
 
   /**
@@ -62,15 +157,4 @@ public abstract class AbstractPluginRestriction extends AbstractRestriction {
   public static List<PluginWrapper> getPlugins() {
     return checkNotNull(Jenkins.getInstance()).getPluginManager().getPlugins();
   }
-
-  /** Trampoline method that determines the Plugin for the class and delgates */
-  private boolean shouldFilter(Class clazz) {
-    final PluginWrapper wrapper = getPluginManager().whichPlugin(clazz);
-
-    if (wrapper == null) {
-      return false;
-    }
-
-    return !isPluginAllowed(wrapper);
-  }
 }
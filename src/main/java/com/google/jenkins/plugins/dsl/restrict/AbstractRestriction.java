@@ -15,6 +15,8 @@
  */
 package com.google.jenkins.plugins.dsl.restrict;
 
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import hudson.DescriptorExtensionList;
@@ -43,36 +45,76 @@ public abstract class AbstractRestriction
   protected final ClassLoader getBaseClassLoader(RestrictedProject project) {
     // Search the project's parent hierarchy for additional
     // restricted projects on which to base our restrictions.
+    final RestrictedProject parentProject = getRestrictedParent(project);
+    if (parentProject != null) {
+      return parentProject.getRestriction().getClassLoader(parentProject);
+    }
+
+    // If no parents of this are restricted, then base things on the
+    // unrestricted uber class loader.
+    return getUnrestrictedClassLoader();
+  }
+
+  /**
+   * @return the nearest ancestor of {@code project} that carries its own
+   * restrictions, or {@code null} if there is none.
+   */
+  @Nullable
+  protected static RestrictedProject getRestrictedParent(
+      RestrictedProject project) {
     ItemGroup parent = project.asProject().getParent();
     while (parent != null) {
       if (parent instanceof RestrictedProject) {
-        final RestrictedProject parentProject = (RestrictedProject) parent;
-        return parentProject.getRestriction().getClassLoader(parentProject);
+        return (RestrictedProject) parent;
       }
       if (!(parent instanceof AbstractItem)) {
         break;
       }
       parent = ((AbstractItem) parent).getParent();
     }
+    return null;
+  }
 
-    // If no parents of this are restricted, then base things on the
-    // unrestricted uber class loader.
+  /**
+   * @return the uber class loader, through which all classes are available.
+   */
+  protected static ClassLoader getUnrestrictedClassLoader() {
     // NOTE: we wrap this class loader anyways to surface diagnostics
     // when there are actual class loading failures, so we can surface
     // them to the user.
     final ClassLoader base =
         checkNotNull(Jenkins.getInstance()).getPluginManager().uberClassLoader;
-    return new ClassLoader() {
-      @Override
-      public Class loadClass(String name) throws ClassNotFoundException {
-        try {
-          return base.loadClass(name);
-        } catch (ClassNotFoundException e) {
-          throw new BadTypeException(
-              Messages.AbstractRestriction_ClassNotFound(name));
-        }
+    // NOTE: we share this wrapper, so that the loaders layered on top of it
+    // (and anything cached against them) can be long-lived.
+    DiagnosticClassLoader loader = baseLoader;
+    if (loader == null || loader.base != base) {
+      loader = new DiagnosticClassLoader(base);
+      baseLoader = loader;
+    }
+    return loader;
+  }
+  private static volatile DiagnosticClassLoader baseLoader;
+
+  /**
+   * Wraps the unrestricted class loader to surface class loading failures
+   * as {@link BadTypeException}s.
+   */
+  private static class DiagnosticClassLoader extends ClassLoader {
+    public DiagnosticClassLoader(ClassLoader base) {
+      this.base = checkNotNull(base);
+    }
+
+    @Override
+    public Class loadClass(String name) throws ClassNotFoundException {
+      try {
+        return base.loadClass(name);
+      } catch (ClassNotFoundException e) {
+        throw new BadTypeException(
+            Messages.AbstractRestriction_ClassNotFound(name));
       }
-    };
+    }
+
+    private final ClassLoader base;
   }
 
   /**
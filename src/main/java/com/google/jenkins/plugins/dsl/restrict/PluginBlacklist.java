@@ -16,11 +16,14 @@
 package com.google.jenkins.plugins.dsl.restrict;
 
 import java.util.List;
+import java.util.Set;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableSet;
+
 import hudson.Extension;
 import hudson.PluginWrapper;
 import hudson.model.Descriptor;
@@ -40,8 +43,19 @@ public class PluginBlacklist extends AbstractPluginRestriction {
   /** {@inheritDoc} */
   @Override
   protected boolean isPluginAllowed(PluginWrapper plugin) {
-    return !getBlacklist().contains(plugin.getShortName());
+    return !getPluginSet().contains(plugin.getShortName());
+  }
+
+  /** @return our plugins as a set, for fast membership checks */
+  private Set<String> getPluginSet() {
+    Set<String> set = pluginSet;
+    if (set == null) {
+      set = ImmutableSet.copyOf(plugins);
+      pluginSet = set;
+    }
+    return set;
   }
+  private transient volatile Set<String> pluginSet;
 
   /** Boilerplate extension code */
   @Extension
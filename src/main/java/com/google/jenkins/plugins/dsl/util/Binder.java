@@ -16,8 +16,13 @@
 package com.google.jenkins.plugins.dsl.util;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
 import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.annotation.Nullable;
 import javax.servlet.ServletException;
 
 import org.directwebremoting.util.FakeHttpServletRequest;
@@ -33,6 +38,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.jenkins.plugins.dsl.restrict.BadTypeException;
 import com.google.jenkins.plugins.dsl.restrict.RestrictedTypeException;
 
@@ -48,6 +58,7 @@ import hudson.model.ViewGroupMixIn;
 
 import jenkins.model.Jenkins;
 
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 /**
@@ -89,6 +100,17 @@ public interface Binder {
   <T extends View> T bindView(ViewGroupMixIn parent,
       String name, JSONObject json) throws IOException, FormException;
 
+  /**
+   * Validate that every type referenced by the {@link JSONObject} (via
+   * {@code $class} or {@code stapler-class}) is available for binding,
+   * without binding anything.
+   *
+   * @param json The serialized object we would instantiate
+   * @throws BadTypeException if a type is unknown
+   * @throws RestrictedTypeException if a type is restricted
+   */
+  void validate(JSONObject json);
+
   /**
    * The default implementation of {@link Binder}, which leverages
    * {@link Stapler} to perform the binding as it would when handing
@@ -130,20 +152,11 @@ public interface Binder {
 
       final T project = (T) descriptor.newInstance(parent, name);
 
-      final Predicate<Descriptor> hasClazz = new Predicate<Descriptor>() {
-        public boolean apply(Descriptor descriptor) {
-          try {
-            return null != getClassLoader().loadClass(
-                descriptor.clazz.getName());
-          } catch (RestrictedTypeException e) {
-            return false;
-          } catch (ClassNotFoundException e) {
-            return false;
-          }
-        }
-      };
-
-      FilteredDescribableList.rewrite(project, hasClazz);
+      // Filter what is bound into the project's lists, and then check what
+      // binding created beyond their reach.
+      final Predicate<Descriptor> hasClazz = getState().getHasClazz();
+      final Set<Object> existing =
+          FilteredDescribableList.rewrite(project, hasClazz);
 
       final Stapler stapler = getStapler();
       final StaplerRequest request = getRequest(stapler, json);
@@ -151,6 +164,7 @@ public interface Binder {
 
       try {
         project.doConfigSubmit(request, response);
+        FilteredDescribableList.check(project, hasClazz, existing);
       } catch (FormException e) {
         throw new IllegalStateException(Messages.DefaultBinder_BadJsonBlob(
             json.toString()), e);
@@ -161,6 +175,45 @@ public interface Binder {
       return project;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void validate(JSONObject json) {
+      validateTypes(json);
+    }
+
+    /** Recursively validate the types referenced within {@code value}. */
+    private void validateTypes(Object value) {
+      if (value instanceof JSONObject) {
+        final JSONObject json = (JSONObject) value;
+        for (Object key : json.keySet()) {
+          final Object element = json.get(key);
+          if (TYPE_KEYS.contains(key) && element instanceof String) {
+            validateType((String) element);
+          } else {
+            validateTypes(element);
+          }
+        }
+      } else if (value instanceof JSONArray) {
+        for (Object element : (JSONArray) value) {
+          validateTypes(element);
+        }
+      }
+    }
+
+    /** Validate a single type through our (restricted) class loader. */
+    private void validateType(String clazzName) {
+      try {
+        getClassLoader().loadClass(clazzName);
+      } catch (ClassNotFoundException ex) {
+        throw new BadTypeException(
+            Messages.DefaultBinder_CannotLoadClass(clazzName));
+      }
+    }
+
+    /** The keys through which JSON objects name their type. */
+    private static final Set<String> TYPE_KEYS =
+        ImmutableSet.of("$class", "stapler-class");
+
     /** {@inheritDoc} */
     @Override
     public <T extends View> T bindView(ViewGroupMixIn parentMixIn,
@@ -196,6 +249,12 @@ public interface Binder {
      */
     @VisibleForTesting
     Descriptor getDescriptor(String clazzName) throws IOException {
+      final LoaderState state = getState();
+      final Descriptor cached = state.getDescriptor(clazzName);
+      if (cached != null) {
+        return cached;
+      }
+
       Class<? extends Describable<?>> implClass;
       try {
         implClass = (Class<? extends Describable<?>>) getClassLoader()
@@ -211,6 +270,7 @@ public interface Binder {
         throw new BadTypeException(
             Messages.DefaultBinder_NoDescriptor(implClass.getName()));
       }
+      state.putDescriptor(clazzName, descriptor);
       return descriptor;
     }
 
@@ -277,16 +337,131 @@ public interface Binder {
     /** Gets an instance of stapler for use in lazy json binding. */
     @VisibleForTesting
     Stapler getStapler() {
-      final WebApp webapp = new WebApp(null /* context */);
-      webapp.setClassLoader(getClassLoader());
+      return getState().getStapler();
+    }
+
+    /** @return the state shared by all binders using our class loader */
+    private LoaderState getState() {
+      return STATES.getUnchecked(getClassLoader());
+    }
 
-      Stapler stapler = new Stapler() {
-          @Override
-          public WebApp getWebApp() {
-            return webapp;
+    /**
+     * The {@link Stapler} and resolved {@link Descriptor}s for each
+     * class loader, which binders sharing a class loader (e.g. the
+     * restrictions of a project) reuse across binds.  This is weakly keyed
+     * so that we don't pin class loaders that are no longer used.
+     */
+    private static final LoadingCache<ClassLoader, LoaderState> STATES =
+        CacheBuilder.newBuilder().weakKeys().softValues().build(
+            new CacheLoader<ClassLoader, LoaderState>() {
+              @Override
+              public LoaderState load(ClassLoader classLoader) {
+                return new LoaderState(classLoader);
+              }
+            });
+
+    /**
+     * The state we cache per class loader.  The descriptors are flushed
+     * whenever the set of loaded plugins changes.
+     * <p>
+     * NOTE: This must only reference its class loader weakly, or the
+     * weakly keyed {@link #STATES} would pin the loader through its value.
+     */
+    private static class LoaderState {
+      public LoaderState(ClassLoader classLoader) {
+        final WeakLoader loader = new WeakLoader(classLoader);
+        final WebApp webapp = new WebApp(null /* context */);
+        webapp.setClassLoader(loader);
+
+        this.stapler = new Stapler() {
+            @Override
+            public WebApp getWebApp() {
+              return webapp;
+            }
+          };
+        this.generation = PluginGeneration.current();
+        // NOTE: we share a single instance of this, so that the filtered
+        // descriptor lists FilteredDescribableList computes for it are
+        // reused across binds.
+        this.hasClazz = new Predicate<Descriptor>() {
+          public boolean apply(Descriptor descriptor) {
+            try {
+              return null != loader.loadClass(descriptor.clazz.getName());
+            } catch (RestrictedTypeException e) {
+              return false;
+            } catch (ClassNotFoundException e) {
+              return false;
+            }
           }
         };
-      return stapler;
+      }
+
+      /** @return whether a descriptor's class is loadable by our loader */
+      public Predicate<Descriptor> getHasClazz() {
+        return hasClazz;
+      }
+      private final Predicate<Descriptor> hasClazz;
+
+      public Stapler getStapler() {
+        return stapler;
+      }
+      private final Stapler stapler;
+
+      @Nullable
+      public Descriptor getDescriptor(String clazzName) {
+        final PluginGeneration current = PluginGeneration.current();
+        if (!current.equals(generation)) {
+          descriptors.clear();
+          generation = current;
+        }
+        return descriptors.get(clazzName);
+      }
+
+      public void putDescriptor(String clazzName, Descriptor descriptor) {
+        descriptors.put(clazzName, descriptor);
+      }
+
+      private final ConcurrentMap<String, Descriptor> descriptors =
+          Maps.newConcurrentMap();
+      private volatile PluginGeneration generation;
+    }
+
+    /**
+     * A class loader that delegates to another, which it only references
+     * weakly, and which fails to load anything once that is collected.
+     */
+    private static class WeakLoader extends ClassLoader {
+      public WeakLoader(ClassLoader inner) {
+        super(null /* parent */);
+        this.inner = new WeakReference<ClassLoader>(checkNotNull(inner));
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public Class<?> loadClass(String className)
+          throws ClassNotFoundException {
+        final ClassLoader loader = inner.get();
+        if (loader == null) {
+          throw new ClassNotFoundException(className);
+        }
+        return loader.loadClass(className);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      protected Class<?> loadClass(String className, boolean resolve)
+          throws ClassNotFoundException {
+        return loadClass(className);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public URL getResource(String name) {
+        final ClassLoader loader = inner.get();
+        return (loader == null) ? null : loader.getResource(name);
+      }
+
+      private final WeakReference<ClassLoader> inner;
     }
   }
 }
@@ -15,16 +15,24 @@
  */
 package com.google.jenkins.plugins.dsl.util;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkState;
 
-import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 /**
  * Utility class for copying {@link JSONObject}s and {@link JSONArray}s
- * while filtering out superfluous content.
+ * while filtering out superfluous content, or for pruning that content from
+ * them in place when the caller owns them.
  */
 public final class Filter {
   /**
@@ -32,43 +40,47 @@ public final class Filter {
    * entries.
    */
   public static JSONObject object(JSONObject object) {
-    JSONObject copy = new JSONObject();
-    // Walk the set of keys for this object.
-    for (Object objKey : object.keySet()) {
+    final JSONObject copy = new JSONObject();
+    final boolean hasClass = object.containsKey("$class");
+    // Walk the entries of this object, dispatching on the type of each
+    // value once.
+    for (Map.Entry<?, ?> entry : (Set<Map.Entry<?, ?>>) object.entrySet()) {
       // Verify that we only see string keys.
-      checkState(objKey instanceof String, "non-string key");
-      String key = (String) objKey;
+      checkState(entry.getKey() instanceof String, "non-string key");
+      final String key = (String) entry.getKey();
 
-      if (keyFilter(key, object)) {
+      if (keyFilter(key, hasClass)) {
         continue;
       }
 
-      // If the key points to an array, then recursively clone it
-      // and insert it into our copy with the same key.
-      JSONArray array = object.optJSONArray(key);
-      if (array != null) {
-        JSONArray copyArray = Filter.array(array);
-        if (!copyArray.isEmpty()) {
-          copy.element(key, copyArray);
+      final Object value = entry.getValue();
+      if (value instanceof JSONArray) {
+        // If the key points to an array, then recursively clone it
+        // and insert it into our copy with the same key.
+        final JSONArray array = (JSONArray) value;
+        if (!array.isEmpty()) {
+          final JSONArray copyArray = Filter.array(array);
+          if (!copyArray.isEmpty()) {
+            copy.element(key, copyArray);
+          }
         }
-        continue;
-      }
-      // If the key points to an object, then recursively clone it
-      // and insert it into our copy with the same key.
-      JSONObject subObject = object.optJSONObject(key);
-      if (subObject != null) {
-        JSONObject copyObject = Filter.object(subObject);
-        if (!copyObject.isEmpty()) {
-          copy.element(key, copyObject);
+      } else if (value instanceof JSONObject) {
+        // If the key points to an object, then recursively clone it
+        // and insert it into our copy with the same key.
+        final JSONObject subObject = (JSONObject) value;
+        if (!isEmpty(subObject)) {
+          final JSONObject copyObject = Filter.object(subObject);
+          if (!copyObject.isEmpty()) {
+            copy.element(key, copyObject);
+          }
+        }
+      } else {
+        final String text = scalar(value);
+        // For all other objects, insert them as they are.
+        if (text != null) {
+          copy.element(key, text);
         }
-        continue;
-      }
-      String value = object.optString(key);
-      if (Strings.isNullOrEmpty(value)) {
-        continue;
       }
-      // For all other objects, insert them as they are.
-      copy.element(key, value);
     }
     return copy;
   }
@@ -78,43 +90,143 @@ public final class Filter {
    * entries.
    */
   public static JSONArray array(JSONArray array) {
-    JSONArray copy = new JSONArray();
-    for (int i = 0; i < array.size(); ++i) {
-      // If the key points to an array, then recursively clone it
-      // and insert it into our copy with the same key.
-      JSONArray subArray = array.optJSONArray(i);
-      if (subArray != null) {
-        JSONArray copyArray = Filter.array(subArray);
-        if (!copyArray.isEmpty()) {
-          copy.add(copyArray);
+    final JSONArray copy = new JSONArray();
+    for (Object value : array) {
+      if (value instanceof JSONArray) {
+        // If the element is an array, then recursively clone it
+        // and insert it into our copy.
+        final JSONArray subArray = (JSONArray) value;
+        if (!subArray.isEmpty()) {
+          final JSONArray copyArray = Filter.array(subArray);
+          if (!copyArray.isEmpty()) {
+            copy.add(copyArray);
+          }
+        }
+      } else if (value instanceof JSONObject) {
+        // If the element is an object, then recursively clone it
+        // and insert it into our copy.
+        final JSONObject subObject = (JSONObject) value;
+        if (!isEmpty(subObject)) {
+          final JSONObject copyObject = Filter.object(subObject);
+          if (!copyObject.isEmpty()) {
+            copy.add(copyObject);
+          }
+        }
+      } else {
+        final String text = scalar(value);
+        // For all other objects, insert them as they are.
+        if (text != null) {
+          copy.add(text);
         }
-        continue;
       }
-      // If the key points to an object, then recursively clone it
-      // and insert it into our copy with the same key.
-      JSONObject subObject = array.optJSONObject(i);
-      if (subObject != null) {
-        JSONObject copyObject = Filter.object(subObject);
-        if (!copyObject.isEmpty()) {
-          copy.add(copyObject);
+    }
+    return copy;
+  }
+
+  /**
+   * Filter superfluous entries out of the given {@link JSONObject} in place,
+   * producing the same result as {@link #object} without copying.
+   *
+   * @return the (now filtered) {@code object}
+   */
+  public static JSONObject prune(JSONObject object) {
+    if (object.isNullObject()) {
+      return object;
+    }
+    final boolean hasClass = object.containsKey("$class");
+    final List<String> removals = Lists.newArrayList();
+    final Map<String, String> replacements = Maps.newLinkedHashMap();
+    for (Map.Entry<?, ?> entry : (Set<Map.Entry<?, ?>>) object.entrySet()) {
+      // Verify that we only see string keys.
+      checkState(entry.getKey() instanceof String, "non-string key");
+      final String key = (String) entry.getKey();
+
+      final Object value = entry.getValue();
+      if (keyFilter(key, hasClass)) {
+        removals.add(key);
+      } else if (value instanceof JSONArray) {
+        if (prune((JSONArray) value).isEmpty()) {
+          removals.add(key);
+        }
+      } else if (value instanceof JSONObject) {
+        if (isEmpty(prune((JSONObject) value))) {
+          removals.add(key);
+        }
+      } else {
+        final String text = scalar(value);
+        if (text == null) {
+          removals.add(key);
+        } else if (text != value) {
+          // Only non-string scalars need replacing with their text.
+          replacements.put(key, text);
         }
-        continue;
       }
-      String value = array.optString(i);
-      if (Strings.isNullOrEmpty(value)) {
-        continue;
+    }
+
+    // Apply our changes after we are done walking the entries.
+    for (String key : removals) {
+      object.remove(key);
+    }
+    for (Map.Entry<String, String> entry : replacements.entrySet()) {
+      object.element(entry.getKey(), entry.getValue());
+    }
+    return object;
+  }
+
+  /**
+   * Filter superfluous entries out of the given {@link JSONArray} in place,
+   * producing the same result as {@link #array} without copying.
+   *
+   * @return the (now filtered) {@code array}
+   */
+  public static JSONArray prune(JSONArray array) {
+    // Walk backwards, so that removals don't disturb our indices.
+    for (int i = array.size() - 1; i >= 0; --i) {
+      final Object value = array.get(i);
+      if (value instanceof JSONArray) {
+        if (prune((JSONArray) value).isEmpty()) {
+          array.remove(i);
+        }
+      } else if (value instanceof JSONObject) {
+        if (isEmpty(prune((JSONObject) value))) {
+          array.remove(i);
+        }
+      } else {
+        final String text = scalar(value);
+        if (text == null) {
+          array.remove(i);
+        } else if (text != value) {
+          array.element(i, text);
+        }
       }
-      // For all other objects, insert them as they are.
-      copy.add(value);
     }
-    return copy;
+    return array;
+  }
+
+  /**
+   * @return the textual form of a scalar value, or {@code null} if it should
+   * be filtered out.
+   */
+  @Nullable
+  private static String scalar(@Nullable Object value) {
+    if (value == null) {
+      return null;
+    }
+    final String text = (value instanceof String)
+        ? (String) value : value.toString();
+    return text.isEmpty() ? null : text;
+  }
+
+  /** @return whether the object has no entries (which a null object lacks) */
+  private static boolean isEmpty(JSONObject object) {
+    return object.isNullObject() || object.isEmpty();
   }
 
   /** Keys to filter out. */
-  private static boolean keyFilter(String key, JSONObject object) {
+  private static boolean keyFilter(String key, boolean hasClass) {
     if ("stapler-class".equals(key)) {
       // Filter any 'stapler-class' that co-exists with a '$class'.
-      return object.containsKey("$class");
+      return hasClass;
     }
     return "".equals(key)
         || "scm".equals(key)
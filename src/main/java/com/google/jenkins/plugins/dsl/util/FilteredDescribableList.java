@@ -17,23 +17,34 @@ package com.google.jenkins.plugins.dsl.util;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
 
 import org.kohsuke.stapler.StaplerRequest;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.collect.Lists;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.jenkins.plugins.dsl.restrict.BadTypeException;
 import com.google.jenkins.plugins.dsl.restrict.RestrictedTypeException;
 
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Descriptor.FormException;
+import hudson.model.Item;
 import hudson.model.Saveable;
 import hudson.util.DescribableList;
 
@@ -90,8 +101,10 @@ public class FilteredDescribableList
     // Detect references to classes that aren't installed.
     final Object array = formData.get(key);
     if (array != null) {
+      final Set<Descriptor> allowed = Sets.newIdentityHashSet();
+      allowed.addAll(descriptors);
       for (Object o : JSONArray.fromObject(array)) {
-        validateClass(((JSONObject) o).getString("$class"), descriptors);
+        validateClass(((JSONObject) o).getString("$class"), allowed);
       }
     }
     super.rebuildHetero(req, formData, applyFilter(descriptors), key);
@@ -102,44 +115,136 @@ public class FilteredDescribableList
    * and appropriately typed for the expected $class of describable.
    * @throws BadTypeException is there are any issues
    */
-  private void validateClass(String className,
-      Collection<? extends Descriptor<T>> descriptors) {
-    final ClassLoader baseLoader =
-        checkNotNull(Jenkins.getInstance()).getPluginManager().uberClassLoader;
-    try {
-      final Class type = baseLoader.loadClass(className);
-      final Descriptor<T> descriptor =
-          checkNotNull(Jenkins.getInstance()).getDescriptor(type);
-
-      if (!descriptors.contains(descriptor)) {
-        throw new BadTypeException(
-            Messages.FilteredDescribableList_NotInList(className));
-      }
-    } catch (ClassNotFoundException e) {
+  private void validateClass(String className, Set<Descriptor> descriptors) {
+    final Resolution resolution = resolve(className);
+    if (!resolution.found) {
       // TODO(mattmoor): and if its an unknown tag?  then what happens?
       throw new BadTypeException(
           Messages.FilteredDescribableList_Unavailable(className));
     }
+    if (!descriptors.contains(resolution.descriptor)) {
+      throw new BadTypeException(
+          Messages.FilteredDescribableList_NotInList(className));
+    }
+  }
+
+  /**
+   * Resolve the {@link Descriptor} for the given class name through the
+   * unrestricted class loader, consulting our cache of prior resolutions.
+   */
+  @VisibleForTesting
+  static Resolution resolve(String className) {
+    final PluginGeneration current = PluginGeneration.current();
+    synchronized (RESOLUTIONS) {
+      if (!current.equals(resolutionGeneration)) {
+        RESOLUTIONS.clear();
+        resolutionGeneration = current;
+      }
+    }
+
+    Resolution resolution = RESOLUTIONS.get(className);
+    if (resolution == null) {
+      final Jenkins jenkins = checkNotNull(Jenkins.getInstance());
+      try {
+        final Class type =
+            jenkins.getPluginManager().uberClassLoader.loadClass(className);
+        resolution = new Resolution(true, jenkins.getDescriptor(type));
+      } catch (ClassNotFoundException e) {
+        resolution = new Resolution(false, null);
+      }
+      RESOLUTIONS.put(className, resolution);
+    }
+    return resolution;
+  }
+
+  /** The outcome, positive or negative, of resolving a class name. */
+  @VisibleForTesting
+  static class Resolution {
+    public Resolution(boolean found, @Nullable Descriptor descriptor) {
+      this.found = found;
+      this.descriptor = descriptor;
+    }
+
+    /** Whether the class could be loaded. */
+    public final boolean found;
+
+    /** The descriptor of the class, if it has one. */
+    @Nullable
+    public final Descriptor descriptor;
   }
 
+  /**
+   * The resolutions of class names we have performed, which are flushed
+   * whenever the set of loaded plugins changes.
+   */
+  private static final ConcurrentMap<String, Resolution> RESOLUTIONS =
+      Maps.newConcurrentMap();
+  private static PluginGeneration resolutionGeneration;
+
   /**
    * Replace matching descriptors with poison pills that throw when an
    * attempt is made to instantiate them.  This is so we don't silently
    * accept attempts to subvert our restrictions.
    */
-  private <E extends Descriptor<T>> List<E> applyFilter(
-      Collection<E> descriptors) {
-    List<E> newList = Lists.newArrayList();
-    for (E d : descriptors) {
-      if (filter.apply(d)) {
-        newList.add(d);
-      } else {
-        newList.add((E) new PoisonPillDescriptor<T>(d.clazz));
+  @VisibleForTesting
+  <E extends Descriptor<T>> List<E> applyFilter(Collection<E> descriptors) {
+    // The filtered list is a function of our filter and the descriptors,
+    // so we share it across all of the lists using the same filter.
+    final ConcurrentMap<List<Descriptor>, List<Descriptor>> memo =
+        FILTERED.getUnchecked(filter);
+    final List<Descriptor> key = ImmutableList.<Descriptor>copyOf(descriptors);
+    List<Descriptor> newList = memo.get(key);
+    if (newList == null) {
+      final ImmutableList.Builder<Descriptor> builder =
+          ImmutableList.builder();
+      for (Descriptor d : key) {
+        if (filter.apply(d)) {
+          builder.add(d);
+        } else {
+          builder.add(POISON_PILLS.getUnchecked(d.clazz));
+        }
       }
+      newList = builder.build();
+      memo.put(key, newList);
     }
-    return newList;
+    return (List<E>) newList;
   }
 
+  /**
+   * The filtered descriptor lists we have computed, per filter.  This is
+   * weakly keyed so that filters (and their class loaders) may be collected.
+   * <p>
+   * NOTE: Filters are keyed by identity, so this only pays off for filters
+   * that are shared across binds, such as those of {@link Binder.Default},
+   * which live as long as the class loader they test against.
+   */
+  private static final LoadingCache<Predicate,
+      ConcurrentMap<List<Descriptor>, List<Descriptor>>> FILTERED =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<Predicate,
+              ConcurrentMap<List<Descriptor>, List<Descriptor>>>() {
+            @Override
+            public ConcurrentMap<List<Descriptor>, List<Descriptor>> load(
+                Predicate filter) {
+              return Maps.newConcurrentMap();
+            }
+          });
+
+  /**
+   * The single poison pill we substitute for each restricted class.  Each
+   * pill references its class, so the values are held softly, or they would
+   * pin their keys.
+   */
+  @VisibleForTesting
+  static final LoadingCache<Class, PoisonPillDescriptor>
+      POISON_PILLS = CacheBuilder.newBuilder().weakKeys().softValues().build(
+          new CacheLoader<Class, PoisonPillDescriptor>() {
+            @Override
+            public PoisonPillDescriptor load(Class clazz) {
+              return new PoisonPillDescriptor(clazz);
+            }
+          });
+
   /**
    * A {@link Descriptor} we substitute for real descriptors that are
    * restricted, so that if an attempt is made to instantiate them an
@@ -168,26 +273,164 @@ public class FilteredDescribableList
   /**
    * Walk the fields of an {@code object} via reflection and populate fields
    * of type {@link DescribableList} with a {@link FilteredDescribableList}
-   * with the provided {@link Predicate}.
+   * with the provided {@link Predicate}.  We recurse into the
+   * {@link Describable} fields of {@code object}, so that the lists of
+   * nested describables are filtered as well.
+   * <p>
+   * This is called before {@code object} is bound, so that the lists filter
+   * what is bound into them.  Lists that already hold entries are left as
+   * they are.
+   *
+   * @param predicate The filter, which should be shared across binds with
+   * the same restrictions, so that the lists it filters may be reused.
+   * @return the objects we walked, which binding did not create, for
+   * passing to {@link #check} once {@code object} is bound
    */
-  public static void rewrite(Object object, Predicate predicate) {
-    // TODO(mattmoor): This should be recursive.
-    for (Class<?> clazz = object.getClass(); clazz != null;
-         clazz = clazz.getSuperclass()) {
-      for (Field field : clazz.getDeclaredFields()) {
-        if (DescribableList.class.isAssignableFrom(field.getType())) {
-          try {
-            field.setAccessible(true);
-            DescribableList list = (DescribableList) field.get(object);
-            checkState(list == null || list.size() == 0);
+  public static Set<Object> rewrite(Object object, Predicate predicate) {
+    final Set<Object> visited = Sets.newIdentityHashSet();
+    rewrite(object, predicate, (Saveable) object, visited);
+    return visited;
+  }
+
+  private static void rewrite(Object object, Predicate predicate,
+      Saveable owner, Set<Object> visited) {
+    if (!visited.add(object)) {
+      return;
+    }
+    final FieldInfo info = FIELDS.getUnchecked(object.getClass());
+    try {
+      for (Field field : info.lists) {
+        final DescribableList list = (DescribableList) field.get(object);
+        if (list != null && list.size() != 0) {
+          // Binding didn't create these entries, so we leave them be.
+          for (Object item : list) {
+            visited.add(item);
+          }
+          continue;
+        }
+        if (!(list instanceof FilteredDescribableList)) {
+          field.set(object, new FilteredDescribableList(predicate, owner));
+        }
+      }
+      for (Field field : info.describables) {
+        final Object value = field.get(object);
+        if (value != null && !(value instanceof Item)) {
+          rewrite(value, predicate, owner, visited);
+        }
+      }
+    } catch (IllegalAccessException e) {
+      // Impossible, we have given ourselves access.
+    }
+  }
+
+  /**
+   * Check the describables that binding {@code object} created, which
+   * Stapler bound without our filter (e.g. into lists that binding replaced,
+   * or that it nested within the describables it created), against the
+   * provided {@link Predicate}.  Unlike {@link #rewrite}, this changes
+   * nothing.
+   *
+   * @param existing the objects {@link #rewrite} walked before binding,
+   * which we neither check nor recurse into
+   * @throws RestrictedTypeException if a list holds an entry that
+   * {@code predicate} rejects
+   */
+  public static void check(Object object, Predicate predicate,
+      Set<Object> existing) {
+    final Set<Object> visited = Sets.newIdentityHashSet();
+    visited.addAll(existing);
+    // NOTE: We walk the bound object itself, even though it existed, since
+    // binding may have replaced its fields.
+    check(object, predicate, visited);
+  }
+
+  private static void check(Object object, Predicate predicate,
+      Set<Object> visited) {
+    final FieldInfo info = FIELDS.getUnchecked(object.getClass());
+    try {
+      for (Field field : info.lists) {
+        final DescribableList list = (DescribableList) field.get(object);
+        if (list == null) {
+          continue;
+        }
+        // The entries of our own lists were filtered as they were bound,
+        // but not what they in turn hold.
+        final boolean filtered = list instanceof FilteredDescribableList;
+        for (Object item : list) {
+          if (!visited.add(item)) {
+            continue;
+          }
+          if (!filtered) {
+            final Descriptor descriptor = ((Describable) item).getDescriptor();
+            if (!predicate.apply(descriptor)) {
+              throw new RestrictedTypeException(
+                  Messages.FilteredDescribableList_Filtered(
+                      descriptor.clazz.getName()));
+            }
+          }
+          check(item, predicate, visited);
+        }
+      }
+      for (Field field : info.describables) {
+        final Object value = field.get(object);
+        if (value != null && !(value instanceof Item) && visited.add(value)) {
+          check(value, predicate, visited);
+        }
+      }
+    } catch (IllegalAccessException e) {
+      // Impossible, we have given ourselves access.
+    }
+  }
 
-            field.set(object, new FilteredDescribableList(
-                predicate, (Saveable) object));
-          } catch (IllegalAccessException e) {
-            // Impossible, we have given ourselves access.
+  /**
+   * The fields of a class, and its super classes, that we care about when
+   * rewriting.  These are computed once per class.
+   */
+  private static class FieldInfo {
+    public FieldInfo(Class<?> clazz) {
+      final ImmutableList.Builder<Field> listFields = ImmutableList.builder();
+      final ImmutableList.Builder<Field> describableFields =
+          ImmutableList.builder();
+      for (; clazz != null; clazz = clazz.getSuperclass()) {
+        for (Field field : clazz.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          if (DescribableList.class.isAssignableFrom(field.getType())) {
+            field.setAccessible(true);
+            listFields.add(field);
+          } else if (Describable.class.isAssignableFrom(field.getType())
+              && !Item.class.isAssignableFrom(field.getType())
+              && !Modifier.isTransient(field.getModifiers())) {
+            field.setAccessible(true);
+            describableFields.add(field);
           }
         }
       }
+      this.lists = listFields.build();
+      this.describables = describableFields.build();
     }
+
+    /** The fields of type {@link DescribableList}. */
+    public final List<Field> lists;
+
+    /** The persisted fields of type {@link Describable}, excluding items. */
+    public final List<Field> describables;
   }
+
+  /**
+   * The fields we rewrite, per concrete class.  This is weakly keyed so that
+   * we don't pin the classes of plugins.
+   * <p>
+   * NOTE: Each {@link Field} references its declaring class, so the values
+   * are held softly, or they would pin their keys.
+   */
+  private static final LoadingCache<Class<?>, FieldInfo> FIELDS =
+      CacheBuilder.newBuilder().weakKeys().softValues().build(
+          new CacheLoader<Class<?>, FieldInfo>() {
+            @Override
+            public FieldInfo load(Class<?> clazz) {
+              return new FieldInfo(clazz);
+            }
+          });
 }
@@ -80,54 +80,81 @@ public abstract class JsonToYaml {
       options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
       // NOTE: This is inadequate, thus the above hack.
       options.setDefaultScalarStyle(DumperOptions.ScalarStyle.PLAIN);
-      final Yaml yaml = new Yaml(new CustomRepresenter(transforms), options);
+      final Yaml yaml = new Yaml(new CustomRepresenter(getTable()), options);
 
       return yaml.dump(yaml.load(inputStream));
     }
 
+    /**
+     * @return the table of how to represent the text of each class covered
+     * by our transforms, which we compute once, on first use.
+     */
+    private Map<String, Representation> getTable() {
+      Map<String, Representation> table = this.table;
+      if (table == null) {
+        table = buildTable(transforms);
+        this.table = table;
+      }
+      return table;
+    }
+
     private final List<YamlTransform> transforms;
+    private volatile Map<String, Representation> table;
+  }
+
+  /**
+   * Build the mapping from the text of each class covered by our transforms
+   * to how it is represented.
+   */
+  private static Map<String, Representation> buildTable(
+      List<YamlTransform> inputTransforms) {
+    final Map<String, Representation> table = Maps.newHashMap();
+    for (YamlTransform xform : inputTransforms) {
+      for (Class clazz : xform.getClasses()) {
+        final String argument = xform.represent(clazz);
+        final String text = xform.construct(argument);
+        // The first transform "wins"
+        if (table.containsKey(text)) {
+          continue;
+        }
+        table.put(text, new Representation(new Tag(xform.getTag()), argument));
+      }
+    }
+    // Store as an immutable version
+    return Collections.unmodifiableMap(table);
+  }
+
+  /** The tag and argument with which we represent a particular string. */
+  private static class Representation {
+    public Representation(Tag tag, String argument) {
+      this.tag = checkNotNull(tag);
+      this.argument = checkNotNull(argument);
+    }
+
+    public final Tag tag;
+    public final String argument;
   }
 
   private static class CustomRepresenter extends Representer {
-    public CustomRepresenter(List<YamlTransform> transforms) {
-      this.representers.put(String.class, new RepresentTransforms(transforms));
+    public CustomRepresenter(Map<String, Representation> table) {
+      this.representers.put(String.class, new RepresentTransforms(table));
     }
 
     private class RepresentTransforms implements Represent {
-      public RepresentTransforms(final List<YamlTransform> inputTransforms) {
-        final Map<String, YamlTransform> transforms = Maps.newHashMap();
-        final Map<String, Class> classes = Maps.newHashMap();
-
-        for (YamlTransform xform : inputTransforms) {
-          for (Class clazz : xform.getClasses()) {
-            final String text = xform.construct(xform.represent(clazz));
-            // The first transform "wins"
-            if (classes.containsKey(text)) {
-              continue;
-            }
-            transforms.put(text, xform);
-            classes.put(text, clazz);
-          }
-        }
-
-        // Store to the final fields as an immutable version
-        this.transforms = Collections.unmodifiableMap(transforms);
-        this.classes = Collections.unmodifiableMap(classes);
+      public RepresentTransforms(Map<String, Representation> table) {
+        this.table = checkNotNull(table);
       }
 
       public Node representData(Object data) {
         final String element = (String) data;
-        if (transforms.containsKey(element)) {
-          final YamlTransform xform = transforms.get(element);
-          final Class clazz = classes.get(element);
-          return representScalar(new Tag(xform.getTag()),
-              xform.represent(clazz));
+        final Representation representation = table.get(element);
+        if (representation != null) {
+          return representScalar(representation.tag, representation.argument);
         }
         return representScalar(Tag.STR, element);
       }
 
-      private final Map<String, YamlTransform> transforms;
-      private final Map<String, Class> classes;
+      private final Map<String, Representation> table;
     }
   }
-}
\ No newline at end of file
+}
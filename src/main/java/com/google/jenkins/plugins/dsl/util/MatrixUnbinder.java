@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl.util;
+
+import hudson.matrix.MatrixProject;
+import hudson.model.AbstractProject;
+
+import net.sf.json.JSONObject;
+
+/**
+ * The part of {@link Unbinder} that handles {@link MatrixProject}s, which
+ * is kept apart so that it is only loaded when the (optional) matrix-project
+ * plugin is installed.
+ */
+final class MatrixUnbinder {
+  /**
+   * @return whether the project is a {@link MatrixProject}, which we check
+   * by name, so that other projects never load the matrix types.
+   */
+  static boolean isMatrix(AbstractProject<?, ?> project) {
+    for (Class<?> clazz = project.getClass(); clazz != null;
+         clazz = clazz.getSuperclass()) {
+      if (MATRIX_PROJECT.equals(clazz.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Add the axes and builders of the matrix project to {@code json}. */
+  static void unbind(JSONObject json, AbstractProject<?, ?> project) {
+    final MatrixProject matrix = (MatrixProject) project;
+    Unbinder.putList(json, "axis", matrix.getAxes());
+    Unbinder.putList(json, "builder", matrix.getBuildersList());
+  }
+
+  private static final String MATRIX_PROJECT = "hudson.matrix.MatrixProject";
+
+  /** Do not instantiate this class. */
+  private MatrixUnbinder() {}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Objects;
+
+import jenkins.model.Jenkins;
+
+/**
+ * An opaque stamp of the set of plugins loaded into Jenkins, used to
+ * invalidate caches of things derived from them (e.g. classes, descriptors).
+ * <p>
+ * Plugins cannot be unloaded without a restart, but they may be dynamically
+ * loaded, which only ever grows the set of plugins.  So a new {@link Jenkins}
+ * instance or a change in the number of plugins is a new generation.
+ * <pre><code>
+ *   if (!generation.equals(PluginGeneration.current())) {
+ *     // flush the cache
+ *   }
+ * </code></pre>
+ */
+public final class PluginGeneration {
+  private PluginGeneration(Jenkins jenkins, int plugins) {
+    this.jenkins = checkNotNull(jenkins);
+    this.plugins = plugins;
+  }
+
+  /** @return the current generation of loaded plugins */
+  public static PluginGeneration current() {
+    final Jenkins jenkins = checkNotNull(Jenkins.getInstance());
+    return new PluginGeneration(jenkins,
+        jenkins.getPluginManager().getPlugins().size());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof PluginGeneration)) {
+      return false;
+    }
+    final PluginGeneration other = (PluginGeneration) o;
+    return jenkins == other.jenkins && plugins == other.plugins;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(System.identityHashCode(jenkins), plugins);
+  }
+
+  private final Jenkins jenkins;
+  private final int plugins;
+}
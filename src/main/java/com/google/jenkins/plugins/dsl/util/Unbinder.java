@@ -0,0 +1,353 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl.util;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.kohsuke.stapler.ClassDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+import hudson.model.AbstractProject;
+import hudson.model.BuildableItemWithBuildWrappers;
+import hudson.model.Describable;
+import hudson.model.JobProperty;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Project;
+import hudson.util.Secret;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * The inverse of {@link Binder}, this reconstructs the JSON from which
+ * binding would produce a given project, from the project's configuration.
+ * This lets us render a DSL for projects that have never been configured
+ * through the UI, and so have no captured form data.
+ * <p>
+ * Describables are reconstructed from the parameters of their
+ * {@link DataBoundConstructor} and their {@link DataBoundSetter}s, whose
+ * values we read back through the matching getters (or fields).  Those
+ * without a {@link DataBoundConstructor} cannot be bound from JSON, and are
+ * omitted.
+ */
+public final class Unbinder {
+  private static final Logger logger = Logger.getLogger(
+      Unbinder.class.getName());
+
+  /** @return the JSON from which binding would reproduce {@code project} */
+  public static JSONObject unbind(AbstractProject<?, ?> project) {
+    final JSONObject json = new JSONObject();
+    json.put("$class", project.getClass().getName());
+    if (!Strings.isNullOrEmpty(project.getDescription())) {
+      json.put("description", project.getDescription());
+    }
+    json.put("disable", project.isDisabled());
+    json.put("concurrentBuild", project.isConcurrentBuild());
+    json.put("blockBuildWhenUpstreamBuilding",
+        project.blockBuildWhenUpstreamBuilding());
+    json.put("blockBuildWhenDownstreamBuilding",
+        project.blockBuildWhenDownstreamBuilding());
+    if (project.getHasCustomQuietPeriod()) {
+      json.put("hasCustomQuietPeriod", true);
+      json.put("quiet_period", project.getQuietPeriod());
+    }
+    if (project.hasCustomScmCheckoutRetryCount()) {
+      json.put("hasCustomScmCheckoutRetryCount", true);
+      json.put("scmCheckoutRetryCount", project.getScmCheckoutRetryCount());
+    }
+    if (project.getAssignedLabelString() != null) {
+      json.put("label", project.getAssignedLabelString());
+    }
+    if (project.getBuildDiscarder() != null) {
+      final JSONObject discarder = describe(project.getBuildDiscarder());
+      if (discarder != null) {
+        json.put("logrotate", true);
+        json.put("buildDiscarder", discarder);
+      }
+    }
+
+    // Properties, triggers and wrappers are keyed by their descriptor,
+    // whereas builders and publishers are heterogeneous lists.
+    final JSONObject properties = new JSONObject();
+    for (JobProperty property : project.getAllProperties()) {
+      final JSONObject value =
+          (property instanceof ParametersDefinitionProperty)
+          ? describeParameters((ParametersDefinitionProperty) property)
+          : describe(property);
+      if (value != null) {
+        properties.put(property.getDescriptor().getJsonSafeClassName(), value);
+      }
+    }
+    json.put("properties", properties);
+    putKeyed(json, project.getTriggers().values());
+    if (project instanceof BuildableItemWithBuildWrappers) {
+      putKeyed(json, ((BuildableItemWithBuildWrappers) project)
+          .getBuildWrappersList());
+    }
+    if (project instanceof Project) {
+      putList(json, "builder", ((Project<?, ?>) project).getBuildersList());
+    } else if (Jenkins.getInstance().getPlugin("matrix-project") != null
+        && MatrixUnbinder.isMatrix(project)) {
+      // The matrix types are only present with their (optional) plugin.
+      MatrixUnbinder.unbind(json, project);
+    }
+    putList(json, "publisher", project.getPublishersList());
+    return json;
+  }
+
+  /**
+   * @return the JSON from which the given describable would be bound, or
+   * {@code null} if it cannot be bound from JSON
+   */
+  @Nullable
+  public static JSONObject describe(Describable<?> describable) {
+    final List<Property> properties =
+        PROPERTIES.getUnchecked(describable.getClass());
+    if (properties.isEmpty() && !isBindable(describable.getClass())) {
+      return null;
+    }
+    final JSONObject json = new JSONObject();
+    json.put("$class", describable.getClass().getName());
+    for (Property property : properties) {
+      final Object value = toJson(property.read(describable));
+      if (value != null) {
+        json.put(property.name, value);
+      }
+    }
+    return json;
+  }
+
+  /** Parameters are bound from a nested list, rather than the property. */
+  private static JSONObject describeParameters(
+      ParametersDefinitionProperty property) {
+    final JSONArray parameters = new JSONArray();
+    for (ParameterDefinition parameter :
+             property.getParameterDefinitions()) {
+      final JSONObject value = describe(parameter);
+      if (value != null) {
+        parameters.add(value);
+      }
+    }
+    final JSONObject parameterized = new JSONObject();
+    parameterized.put("parameter", parameters);
+    final JSONObject json = new JSONObject();
+    json.put("parameterized", parameterized);
+    return json;
+  }
+
+  /** Add the given describables to {@code json}, keyed by descriptor. */
+  private static void putKeyed(JSONObject json,
+      Collection<? extends Describable> describables) {
+    for (Describable describable : describables) {
+      final JSONObject value = describe(describable);
+      if (value != null) {
+        json.put(describable.getDescriptor().getJsonSafeClassName(), value);
+      }
+    }
+  }
+
+  /** Add the given describables to {@code json}, as a list. */
+  static void putList(JSONObject json, String key,
+      Collection<? extends Describable> describables) {
+    final Object value = toJson(describables);
+    if (value != null) {
+      json.put(key, value);
+    }
+  }
+
+  /**
+   * @return the JSON form of a property's value, or {@code null} if it has
+   * none we can bind from
+   */
+  @Nullable
+  private static Object toJson(@Nullable Object value) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof String || value instanceof Boolean
+        || value instanceof Number) {
+      return value;
+    } else if (value instanceof Character || value instanceof Enum) {
+      return value.toString();
+    } else if (value instanceof Secret) {
+      // Never export secrets in the clear.
+      return ((Secret) value).getEncryptedValue();
+    } else if (value instanceof Describable) {
+      return describe((Describable) value);
+    } else if (value instanceof Collection || value instanceof Object[]) {
+      final JSONArray array = new JSONArray();
+      for (Object element : (value instanceof Object[])
+               ? ImmutableList.copyOf((Object[]) value)
+               : (Collection<?>) value) {
+        final Object converted = toJson(element);
+        if (converted != null) {
+          array.add(converted);
+        }
+      }
+      return array.isEmpty() ? null : array;
+    }
+    // We have no way to tell how anything else is bound.
+    return null;
+  }
+
+  /** @return whether the class has a {@link DataBoundConstructor} */
+  private static boolean isBindable(Class<?> clazz) {
+    return getDataBoundConstructor(clazz) != null;
+  }
+
+  @Nullable
+  private static Constructor<?> getDataBoundConstructor(Class<?> clazz) {
+    for (Constructor<?> constructor : clazz.getConstructors()) {
+      if (constructor.isAnnotationPresent(DataBoundConstructor.class)) {
+        return constructor;
+      }
+    }
+    return null;
+  }
+
+  /** A bindable property of a describable, and how to read it back. */
+  private static class Property {
+    public Property(String name, AccessibleObject accessor) {
+      this.name = name;
+      this.accessor = accessor;
+    }
+
+    /** @return the value of the property, or {@code null} on failure */
+    @Nullable
+    public Object read(Object object) {
+      try {
+        if (accessor instanceof Method) {
+          return ((Method) accessor).invoke(object);
+        }
+        return ((Field) accessor).get(object);
+      } catch (IllegalAccessException e) {
+        logger.log(Level.FINE, "Unable to read " + name, e);
+      } catch (InvocationTargetException e) {
+        logger.log(Level.FINE, "Unable to read " + name, e);
+      }
+      return null;
+    }
+
+    public final String name;
+    private final AccessibleObject accessor;
+  }
+
+  /** @return the bindable properties of {@code clazz} we can read back */
+  private static List<Property> getProperties(Class<?> clazz) {
+    final ImmutableList.Builder<Property> properties = ImmutableList.builder();
+    final Constructor<?> constructor = getDataBoundConstructor(clazz);
+    if (constructor == null) {
+      return properties.build();
+    }
+    for (String name : ClassDescriptor.loadParameterNames(constructor)) {
+      addProperty(properties, clazz, name);
+    }
+    for (Method method : clazz.getMethods()) {
+      if (method.isAnnotationPresent(DataBoundSetter.class)
+          && method.getName().startsWith("set")
+          && method.getName().length() > 3) {
+        final String suffix = method.getName().substring(3);
+        addProperty(properties, clazz,
+            Character.toLowerCase(suffix.charAt(0)) + suffix.substring(1));
+      }
+    }
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (field.isAnnotationPresent(DataBoundSetter.class)) {
+          addProperty(properties, clazz, field.getName());
+        }
+      }
+    }
+    return properties.build();
+  }
+
+  /** Add the named property, if we can find a way to read it back. */
+  private static void addProperty(ImmutableList.Builder<Property> properties,
+      Class<?> clazz, String name) {
+    final AccessibleObject accessor = getAccessor(clazz, name);
+    if (accessor != null) {
+      properties.add(new Property(name, accessor));
+    }
+  }
+
+  /**
+   * @return the getter (or failing that, the field) through which to read
+   * back the named property, or {@code null} if there is none
+   */
+  @Nullable
+  private static AccessibleObject getAccessor(Class<?> clazz, String name) {
+    final String suffix =
+        Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    for (String getter : new String[] { "get" + suffix, "is" + suffix, name }) {
+      try {
+        final Method method = clazz.getMethod(getter);
+        if (method.getReturnType() != void.class) {
+          return method;
+        }
+      } catch (NoSuchMethodException e) {
+        // Try the next form.
+      }
+    }
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      try {
+        final Field field = c.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+      } catch (NoSuchFieldException e) {
+        // Try the super class.
+      } catch (SecurityException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The properties we read back, per concrete class.  This is weakly keyed
+   * so that we don't pin the classes of plugins, and since each accessor
+   * references its class, the values are held softly.
+   */
+  private static final LoadingCache<Class<?>, List<Property>> PROPERTIES =
+      CacheBuilder.newBuilder().weakKeys().softValues().build(
+          new CacheLoader<Class<?>, List<Property>>() {
+            @Override
+            public List<Property> load(Class<?> clazz) {
+              return getProperties(clazz);
+            }
+          });
+
+  /** Do not instantiate this class. */
+  private Unbinder() {}
+}
@@ -16,6 +16,7 @@
 package com.google.jenkins.plugins.delegate;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -32,6 +33,7 @@ import org.jvnet.hudson.test.MockFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import hudson.model.AbstractBuild;
@@ -177,7 +179,44 @@ public class AbstractRunnableItemGroupTest {
   }
 
 
-  // TODO(mattmoor): deletion, child deletion, child rename, addItem, submit
+  @Mock
+  private TopLevelItem mockItem;
+
+  @Mock
+  private TopLevelItem otherItem;
+
+  @Test
+  public void testAddItem_SnapshotIsolation() throws Exception {
+    TestImpl underTest = new TestImpl(mockFolder, "foo",
+        tabBar, views, mockMixIn);
+    when(mockItem.getName()).thenReturn("v0000");
+    when(otherItem.getName()).thenReturn("v0001");
+
+    underTest.addItem(mockItem);
+    final Collection<TopLevelItem> before = underTest.getItems();
+
+    underTest.addItem(otherItem);
+    final Collection<TopLevelItem> after = underTest.getItems();
+
+    // Earlier listings are unaffected by later additions.
+    assertEquals(ImmutableList.of(mockItem), ImmutableList.copyOf(before));
+    assertEquals(ImmutableList.of(mockItem, otherItem),
+        ImmutableList.copyOf(after));
+    assertSame(otherItem, underTest.getItem("v0001"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddItem_Duplicate() throws Exception {
+    TestImpl underTest = new TestImpl(mockFolder, "foo",
+        tabBar, views, mockMixIn);
+    when(mockItem.getName()).thenReturn("v0000");
+    when(otherItem.getName()).thenReturn("v0000");
+
+    underTest.addItem(mockItem);
+    underTest.addItem(otherItem);
+  }
+
+  // TODO(mattmoor): deletion, child deletion, child rename, submit
 
 
   private static final String  PRIMARY_VIEW_NAME = "my-view";
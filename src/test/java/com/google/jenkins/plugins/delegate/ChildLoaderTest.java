@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.delegate;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+
+/** Tests for {@link ChildLoader}. */
+public class ChildLoaderTest {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File config;
+
+  @Before
+  public void setUp() throws Exception {
+    final FreeStyleProject project = jenkins.createFreeStyleProject("tmpl");
+    config = project.getConfigFile().getFile();
+  }
+
+  /** Lay out {@code count} child directories, in reverse order. */
+  private List<String> makeChildren(File dir, int count) throws Exception {
+    final List<String> names = Lists.newArrayList();
+    for (int i = count - 1; i >= 0; --i) {
+      final String name = String.format("v%04d", i);
+      final File child = new File(dir, name);
+      child.mkdirs();
+      Files.copy(config, new File(child, "config.xml"));
+      names.add(0, name);
+    }
+    return names;
+  }
+
+  @Test
+  public void testLoad_Serial() throws Exception {
+    final File dir = folder.newFolder("serial");
+    final List<String> names =
+        makeChildren(dir, ChildLoader.PARALLEL_THRESHOLD - 1);
+
+    final Map<String, Item> children = ChildLoader.load(
+        jenkins.getInstance(), dir, null /* existing */);
+
+    assertEquals(names, ImmutableList.copyOf(children.keySet()));
+  }
+
+  @Test
+  public void testLoad_Parallel() throws Exception {
+    final File dir = folder.newFolder("parallel");
+    final List<String> names =
+        makeChildren(dir, ChildLoader.PARALLEL_THRESHOLD * 4);
+
+    final Map<String, Item> children = ChildLoader.load(
+        jenkins.getInstance(), dir, null /* existing */);
+
+    // Insertion is deterministic regardless of completion order.
+    assertEquals(names, ImmutableList.copyOf(children.keySet()));
+    for (Map.Entry<String, Item> entry : children.entrySet()) {
+      assertEquals(entry.getKey(), entry.getValue().getName());
+    }
+  }
+
+  @Test
+  public void testLoad_RetainsIdentity() throws Exception {
+    final File dir = folder.newFolder("reload");
+    makeChildren(dir, ChildLoader.PARALLEL_THRESHOLD * 2);
+
+    final Map<String, Item> first = ChildLoader.load(
+        jenkins.getInstance(), dir, null /* existing */);
+    final Item v0 = first.get("v0000");
+
+    final Map<String, Item> second = ChildLoader.load(
+        jenkins.getInstance(), dir, ImmutableMap.of("v0000", v0));
+
+    assertEquals(first.keySet(), second.keySet());
+    assertSame(v0, second.get("v0000"));
+  }
+
+  @Test
+  public void testLoad_SkipsDirectoriesWithoutConfig() throws Exception {
+    final File dir = folder.newFolder("missing");
+    final List<String> names = makeChildren(dir, 3);
+    new File(dir, "empty").mkdirs();
+
+    final Map<String, Item> children = ChildLoader.load(
+        jenkins.getInstance(), dir, null /* existing */);
+
+    assertEquals(names, ImmutableList.copyOf(children.keySet()));
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.ImmutableList;
+import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
+import com.google.jenkins.plugins.dsl.restrict.PluginWhitelist;
+
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.StringParameterValue;
+import hudson.scm.NullSCM;
+
+import jenkins.branch.Branch;
+import jenkins.branch.BranchProperty;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevisionAction;
+
+/**
+ * Tests for {@link AvoidanceCache}.
+ */
+public class AvoidanceCacheTest {
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  @Mock
+  private YamlBuild mockBuild;
+
+  @Mock
+  private YamlProject mockProject;
+
+  @Mock
+  private YamlMultiBranchProject mockMultiBranchProject;
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    when(mockBuild.getParent()).thenReturn(mockProject);
+    when(mockProject.getRestriction()).thenReturn(new NoRestriction());
+  }
+
+  private static SCMRevisionAction revision(String branch, String hash) {
+    return new SCMRevisionAction(new AbstractGitSCMSource.SCMRevisionImpl(
+        new SCMHead(branch), hash));
+  }
+
+  private static SCMRevisionAction revision(String hash) {
+    return revision("master", hash);
+  }
+
+  @Test
+  public void testKey_NoRevision() throws Exception {
+    assertNull(AvoidanceCache.key(mockBuild, "abc"));
+  }
+
+  @Test
+  public void testKey() throws Exception {
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("deadbeef"));
+    final String key = AvoidanceCache.key(mockBuild, "abc");
+    assertNotNull(key);
+    assertEquals(key, AvoidanceCache.key(mockBuild, "abc"));
+
+    // A different DSL is a different key.
+    assertFalse(key.equals(AvoidanceCache.key(mockBuild, "def")));
+
+    // As are different parameters.
+    when(mockBuild.getAction(ParametersAction.class)).thenReturn(
+        new ParametersAction(new ParameterValue[] {
+            new StringParameterValue("foo", "bar")}));
+    final String withParameters = AvoidanceCache.key(mockBuild, "abc");
+    assertFalse(key.equals(withParameters));
+
+    // As is a different revision.
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("cafebabe"));
+    assertFalse(withParameters.equals(AvoidanceCache.key(mockBuild, "abc")));
+  }
+
+  @Test
+  public void testKey_SharedAcrossBranches() throws Exception {
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("master", "deadbeef"));
+    final String key = AvoidanceCache.key(mockBuild, "abc");
+
+    // The same commit on another branch has the same key.
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("PR-1", "deadbeef"));
+    assertEquals(key, AvoidanceCache.key(mockBuild, "abc"));
+
+    // But not under a different restriction.
+    when(mockProject.getRestriction()).thenReturn(
+        new PluginWhitelist(ImmutableList.of("git")));
+    assertFalse(key.equals(AvoidanceCache.key(mockBuild, "abc")));
+  }
+
+  @Test
+  public void testKey_DistinctSources() throws Exception {
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("master", "deadbeef"));
+    when(mockProject.getParent()).thenReturn(mockMultiBranchProject);
+    when(mockProject.getBranch()).thenReturn(branch("origin", "master"));
+    final String key = AvoidanceCache.key(mockBuild, "abc");
+
+    // Branches of the same source share results...
+    when(mockBuild.getAction(SCMRevisionAction.class))
+        .thenReturn(revision("PR-1", "deadbeef"));
+    when(mockProject.getBranch()).thenReturn(branch("origin", "PR-1"));
+    assertEquals(key, AvoidanceCache.key(mockBuild, "abc"));
+
+    // ... but not those of another (e.g. a fork).
+    when(mockProject.getBranch()).thenReturn(branch("fork", "PR-1"));
+    assertFalse(key.equals(AvoidanceCache.key(mockBuild, "abc")));
+  }
+
+  private static Branch branch(String sourceId, String name) {
+    return new Branch(sourceId, new SCMHead(name), new NullSCM(),
+        ImmutableList.<BranchProperty>of());
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    final AvoidanceCache underTest = AvoidanceCache.load(dir.getRoot());
+    assertNull(underTest.get("key"));
+
+    underTest.put("key",
+        new AvoidanceCache.Entry("master", "v0000-abc", 3, 7));
+    assertEquals(3, underTest.get("key").getChildNumber());
+
+    // The entries survive a reload.
+    final AvoidanceCache.Entry entry =
+        AvoidanceCache.load(dir.getRoot()).get("key");
+    assertEquals("master", entry.getProjectName());
+    assertEquals("v0000-abc", entry.getChildName());
+    assertEquals(3, entry.getChildNumber());
+    assertEquals(7, entry.getNumber());
+  }
+}
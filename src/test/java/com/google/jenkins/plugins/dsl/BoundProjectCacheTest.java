@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.jenkins.plugins.dsl.restrict.AbstractRestriction;
+import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
+import com.google.jenkins.plugins.dsl.restrict.RestrictedProject;
+import com.google.jenkins.plugins.dsl.restrict.RestrictedTypeException;
+
+import hudson.model.FreeStyleProject;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Tests for {@link BoundProjectCache}.
+ */
+public class BoundProjectCacheTest {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private YamlProject<YamlProject> outer;
+
+  private YamlProject<FreeStyleProject> underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    BoundProjectCache.clear();
+
+    outer = Jenkins.getInstance().createProject(YamlProject.class, "outer");
+    outer.setRestriction(new NoRestriction());
+
+    underTest = new YamlProject<FreeStyleProject>(
+        outer, "inner", null /* module */);
+    underTest.setRestriction(new NoRestriction());
+    outer.addItem(underTest);
+  }
+
+  /** A restriction under which nothing may be instantiated. */
+  private static class NothingAllowed extends AbstractRestriction {
+    /** {@inheritDoc} */
+    @Override
+    public ClassLoader getClassLoader(RestrictedProject project) {
+      return new ClassLoader() {
+        @Override
+        public Class loadClass(String name) {
+          throw new RestrictedTypeException(name);
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testGet_Hit() throws Exception {
+    assertNull(BoundProjectCache.get(underTest, HASH));
+
+    BoundProjectCache.put(underTest, HASH, XML);
+    assertEquals(XML, BoundProjectCache.get(underTest, HASH));
+
+    BoundProjectCache.clear();
+    assertNull(BoundProjectCache.get(underTest, HASH));
+  }
+
+  @Test
+  public void testGet_AncestorRestrictionTightened() throws Exception {
+    final JSONObject json = new JSONObject();
+    json.put("$class", FreeStyleProject.class.getName());
+
+    underTest.getModule().getBinder(underTest).validate(json);
+    BoundProjectCache.put(underTest, HASH, XML);
+    assertNotNull(BoundProjectCache.get(underTest, HASH));
+
+    // Tightening the restriction of an ancestor changes what the DSL may
+    // bind to, without touching the project itself.
+    final String before = BoundProjectCache.key(underTest, HASH);
+    outer.setRestriction(new NothingAllowed());
+    assertFalse(before.equals(BoundProjectCache.key(underTest, HASH)));
+    assertNull(BoundProjectCache.get(underTest, HASH));
+
+    // ... and so the DSL it had bound is now rejected.
+    try {
+      underTest.getModule().getBinder(underTest).validate(json);
+      fail("Expected RestrictedTypeException");
+    } catch (RestrictedTypeException e) {
+      // Expected
+    }
+  }
+
+  private static final String HASH = "0123456789abcdef";
+  private static final String XML = "<project/>";
+}
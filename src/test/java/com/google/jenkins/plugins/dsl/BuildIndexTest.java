@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+
+import hudson.model.Result;
+
+/**
+ * Tests for {@link BuildIndex}.
+ */
+public class BuildIndexTest {
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private BuildIndex underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    underTest = BuildIndex.open(dir.getRoot());
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    assertEquals(0, underTest.size());
+    assertNull(underTest.get(1));
+  }
+
+  @Test
+  public void testAppendAndGet() throws Exception {
+    underTest.append(new BuildIndex.Record(1, "v0000-abc", 1,
+        Result.SUCCESS, 1234L));
+    underTest.append(new BuildIndex.Record(3, "v0001-def", 1,
+        null /* result */, 0L));
+    // Concurrent builds may complete out of order.
+    underTest.append(new BuildIndex.Record(2, "v0000-abc", 2,
+        Result.ABORTED, 42L));
+
+    assertEquals(3, underTest.size());
+    BuildIndex.Record record = underTest.get(1);
+    assertEquals(1, record.getNumber());
+    assertEquals("v0000-abc", record.getChildName());
+    assertEquals(1, record.getChildNumber());
+    assertEquals(Result.SUCCESS, record.getResult());
+    assertEquals(1234L, record.getDuration());
+
+    assertNull(underTest.get(3).getResult());
+    assertEquals(Result.ABORTED, underTest.get(2).getResult());
+    assertNull(underTest.get(4));
+
+    // A fresh index over the same directory reads the same records.
+    assertEquals("v0001-def",
+        BuildIndex.open(dir.getRoot()).get(3).getChildName());
+  }
+
+  @Test
+  public void testLongNameNotIndexed() throws Exception {
+    underTest.append(new BuildIndex.Record(1, Strings.repeat("x", 100), 1,
+        Result.SUCCESS, 0L));
+    assertNull(underTest.get(1));
+  }
+
+  @Test
+  public void testPartialRecordIgnored() throws Exception {
+    underTest.append(new BuildIndex.Record(1, "v0000-abc", 1,
+        Result.SUCCESS, 0L));
+
+    // Simulate an append that was interrupted part way through.
+    final FileOutputStream out = new FileOutputStream(
+        new File(dir.getRoot(), "builds.idx"), true /* append */);
+    try {
+      out.write(new byte[] {0, 0, 0, 2});
+    } finally {
+      out.close();
+    }
+    assertEquals(1, underTest.size());
+    assertNull(underTest.get(2));
+
+    // The next append replaces the partial record.
+    underTest.append(new BuildIndex.Record(2, "v0000-abc", 2,
+        Result.FAILURE, 0L));
+    assertEquals(2, underTest.size());
+    assertEquals(Result.FAILURE, underTest.get(2).getResult());
+  }
+
+  @Test
+  public void testGetAll() throws Exception {
+    underTest.append(new BuildIndex.Record(1, "v0000-abc", 1,
+        Result.SUCCESS, 0L));
+    assertEquals(1, underTest.getAll().size());
+
+    // Records appended since we last read are picked up.
+    underTest.append(new BuildIndex.Record(2, "v0000-abc", 2,
+        Result.FAILURE, 0L));
+    final List<BuildIndex.Record> all = underTest.getAll();
+    assertEquals(2, all.size());
+    assertEquals(2, all.get(0).getNumber());
+    assertEquals(1, all.get(1).getNumber());
+  }
+
+  @Test
+  public void testDeleted() throws Exception {
+    underTest.append(new BuildIndex.Record(1, "v0000-abc", 1,
+        Result.SUCCESS, 0L));
+    assertEquals(1, underTest.size());
+
+    // Reading the index doesn't hold it open, and we notice it is gone.
+    assertTrue(new File(dir.getRoot(), "builds.idx").delete());
+    assertEquals(0, underTest.size());
+    assertNull(underTest.get(1));
+
+    underTest.append(new BuildIndex.Record(2, "v0000-abc", 2,
+        Result.SUCCESS, 0L));
+    assertNull(underTest.get(1));
+    assertEquals(2, underTest.get(2).getNumber());
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    underTest.append(new BuildIndex.Record(1, "v0000-abc", 1,
+        Result.SUCCESS, 0L));
+    underTest.append(new BuildIndex.Record(2, "v0000-abc", 2,
+        Result.FAILURE, 0L));
+    underTest.append(new BuildIndex.Record(3, "v0001-def", 1,
+        Result.SUCCESS, 0L));
+    assertEquals(2, underTest.get(2).getChildNumber());
+
+    // Removing a record compacts the index, leaving the others intact.
+    underTest.remove(2);
+    underTest.remove(4 /* not indexed */);
+    assertNull(underTest.get(2));
+    assertEquals(2, underTest.size());
+    assertEquals(1, underTest.get(1).getChildNumber());
+    assertEquals("v0001-def", underTest.get(3).getChildName());
+    assertEquals(2 * 64, new File(dir.getRoot(), "builds.idx").length());
+
+    // Appending after a removal is indexed as usual.
+    underTest.append(new BuildIndex.Record(4, "v0001-def", 2,
+        Result.SUCCESS, 0L));
+    assertEquals(2, underTest.get(4).getChildNumber());
+    assertEquals(1, BuildIndex.open(dir.getRoot()).get(3).getChildNumber());
+  }
+}
@@ -105,6 +105,28 @@ public class JobHistoryViewTest {
     verifyNoMoreInteractions(mockItem);
   }
 
+  @Mock
+  private TopLevelItem mockOtherItem;
+
+  @Test
+  public void testGetItems_Paged() throws Exception {
+    List<TopLevelItem> list = ImmutableList.of(mockItem, mockOtherItem);
+    when(mockItemGroup.getItems()).thenReturn(list);
+    JobHistoryView underTest = new JobHistoryView() {
+        @Override
+        public ItemGroup getOwnerItemGroup() {
+          return mockItemGroup;
+        }
+      };
+
+    // Outside of a request, we show the first page, newest-first.
+    assertEquals(0, underTest.getPage());
+    assertEquals(1, underTest.getPageCount());
+    assertEquals(ImmutableList.of(mockOtherItem, mockItem),
+        underTest.getItems(0));
+    assertEquals(0, underTest.getItems(1).size());
+  }
+
   @Test
   public void testColumns() throws Exception {
     JobHistoryView underTest = new JobHistoryView();
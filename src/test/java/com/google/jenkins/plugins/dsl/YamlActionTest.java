@@ -15,6 +15,12 @@
  */
 package com.google.jenkins.plugins.dsl;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
@@ -26,6 +32,8 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.mockito.MockitoAnnotations;
 
+import com.google.common.collect.Lists;
+
 import hudson.model.FreeStyleProject;
 
 /**
@@ -61,6 +69,28 @@ public class YamlActionTest {
     assertSame(action, project.getAction(YamlAction.class));
   }
 
+  @Test
+  public void testAttach_Concurrent() throws Exception {
+    final List<Future<YamlAction>> futures = Lists.newArrayList();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executor.submit(new Callable<YamlAction>() {
+            @Override
+            public YamlAction call() throws Exception {
+              return YamlAction.of(project);
+            }
+          }));
+      }
+      // Every caller sees the single action attached to the project.
+      for (Future<YamlAction> future : futures) {
+        assertSame(project.getAction(YamlAction.class), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testContent() throws Exception {
     final YamlAction action = YamlAction.of(project);
@@ -69,5 +99,16 @@ public class YamlActionTest {
     assertEquals(CONTENT, action.getYaml());
   }
 
+  @Test
+  public void testContent_RenderedFromJson() throws Exception {
+    final YamlAction action = YamlAction.of(project);
+    action.setJson(JSON_CONTENT);
+
+    assertEquals(CONTENT, action.getYaml().trim());
+    // Rendering is cached.
+    assertSame(action.getYaml(), action.getYaml());
+  }
+
   private static final String CONTENT = "foo: bar";
+  private static final String JSON_CONTENT = "{\"foo\": \"bar\"}";
 }
\ No newline at end of file
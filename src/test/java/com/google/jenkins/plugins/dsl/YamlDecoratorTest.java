@@ -17,22 +17,29 @@ package com.google.jenkins.plugins.dsl;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
 import org.mockito.MockitoAnnotations;
 
 import com.google.common.io.CharStreams;
 
+import hudson.XmlFile;
 import hudson.model.FreeStyleProject;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Saveable;
 import hudson.model.StringParameterDefinition;
+import hudson.model.listeners.SaveableListener;
 
 /**
  * Tests for {@link YamlDecorator}.
@@ -63,6 +70,8 @@ public class YamlDecoratorTest {
   public void testProjectCreation() throws Exception {
     // Submit the form and check that the values match our original construction
     jenkins.configRoundtrip(project);
+    // The YAML is exported in the background, so wait for it.
+    YamlDecorator.flush();
 
     // Verify that a YamlAction was attached by our decorator through a method
     // that doesn't attach one if absent.
@@ -79,4 +88,61 @@ public class YamlDecoratorTest {
 
     assertEquals(text, action.getYaml());
   }
+
+  /** Counts the saves of projects, so we can tell how often we export. */
+  @TestExtension
+  public static class SaveCounter extends SaveableListener {
+    /** {@inheritDoc} */
+    @Override
+    public void onChange(Saveable saveable, XmlFile file) {
+      if (saveable instanceof FreeStyleProject) {
+        saves.incrementAndGet();
+      }
+    }
+
+    static final AtomicInteger saves = new AtomicInteger();
+  }
+
+  @Test
+  public void testCoalescedExport() throws Exception {
+    // Make sure that none of our round-trips is exported early.
+    final long debounceMillis = YamlDecorator.debounceMillis;
+    YamlDecorator.debounceMillis = 60 * 1000;
+    try {
+      jenkins.configRoundtrip(project);
+      jenkins.configRoundtrip(project);
+      jenkins.configRoundtrip(project);
+      assertNull(project.getAction(YamlAction.class));
+
+      SaveCounter.saves.set(0);
+      YamlDecorator.flush();
+    } finally {
+      YamlDecorator.debounceMillis = debounceMillis;
+    }
+
+    // The three round-trips were exported (and saved) just the once.
+    assertEquals(1, SaveCounter.saves.get());
+    final YamlAction action = project.getAction(YamlAction.class);
+    assertNotNull(action);
+    assertNotNull(action.getYaml());
+  }
+
+  @Test
+  public void testDeletedNotExported() throws Exception {
+    final long debounceMillis = YamlDecorator.debounceMillis;
+    YamlDecorator.debounceMillis = 60 * 1000;
+    try {
+      jenkins.configRoundtrip(project);
+      project.delete();
+
+      SaveCounter.saves.set(0);
+      YamlDecorator.flush();
+    } finally {
+      YamlDecorator.debounceMillis = debounceMillis;
+    }
+
+    // The pending export mustn't write the project back to disk.
+    assertEquals(0, SaveCounter.saves.get());
+    assertFalse(project.getConfigFile().exists());
+  }
 }
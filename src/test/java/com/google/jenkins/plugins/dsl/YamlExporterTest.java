@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
+
+import hudson.model.FreeStyleProject;
+import hudson.tasks.Shell;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Tests for {@link YamlExporter}.
+ */
+public class YamlExporterTest {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  @Test
+  public void testExport() throws Exception {
+    final FreeStyleProject configured =
+        jenkins.createFreeStyleProject("configured");
+    configured.getBuildersList().add(new Shell("echo Hello World"));
+    jenkins.configRoundtrip(configured);
+    YamlDecorator.flush();
+
+    // Never configured through the UI, so we reconstruct its DSL.
+    final FreeStyleProject untouched =
+        jenkins.createFreeStyleProject("untouched");
+    untouched.getBuildersList().add(new Shell("echo Goodbye"));
+
+    final Map<String, String> entries = export();
+
+    assertEquals(ImmutableSet.of("configured/.jenkins.yaml",
+        "untouched/.jenkins.yaml"), entries.keySet());
+    assertThat(entries.get("configured/.jenkins.yaml"),
+        containsString("echo Hello World"));
+    assertThat(entries.get("untouched/.jenkins.yaml"),
+        containsString("echo Goodbye"));
+  }
+
+  @Test
+  public void testExport_FromConfigXml() throws Exception {
+    Jenkins.getInstance().createProjectFromXML("fromXml",
+        new ByteArrayInputStream(CONFIG_XML.getBytes(Charsets.UTF_8)));
+
+    final Map<String, String> entries = export();
+
+    assertEquals(ImmutableSet.of("fromXml/.jenkins.yaml"), entries.keySet());
+    assertThat(entries.get("fromXml/.jenkins.yaml"),
+        containsString("echo From XML"));
+  }
+
+  @Test
+  public void testExport_SkipsYamlProjectChildren() throws Exception {
+    final YamlProject<FreeStyleProject> outer =
+        Jenkins.getInstance().createProject(YamlProject.class, "outer");
+    outer.addItem(new FreeStyleProject(outer, "child"));
+
+    final Map<String, String> entries = export();
+
+    assertEquals(ImmutableSet.of("outer/.jenkins.yaml"), entries.keySet());
+  }
+
+  /** @return the entries of the archive exported for the instance */
+  private Map<String, String> export() throws Exception {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    YamlExporter.export(jenkins.getInstance(), output);
+
+    final Map<String, String> entries = Maps.newHashMap();
+    final ZipInputStream zip = new ZipInputStream(
+        new ByteArrayInputStream(output.toByteArray()));
+    for (ZipEntry entry = zip.getNextEntry(); entry != null;
+         entry = zip.getNextEntry()) {
+      entries.put(entry.getName(), CharStreams.toString(
+          new InputStreamReader(zip, Charsets.UTF_8)));
+    }
+    return entries;
+  }
+
+  private static final String CONFIG_XML =
+      "<project><builders><hudson.tasks.Shell>"
+      + "<command>echo From XML</command>"
+      + "</hudson.tasks.Shell></builders></project>";
+}
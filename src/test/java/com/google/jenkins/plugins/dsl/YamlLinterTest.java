@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
+
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.TopLevelItem;
+import hudson.model.User;
+import hudson.security.GlobalMatrixAuthorizationStrategy;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Tests for {@link YamlLinter}.
+ * @param <T>
+ */
+public class YamlLinterTest<T extends AbstractProject & TopLevelItem> {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  private YamlProject<T> project;
+
+  @Before
+  public void setUp() throws Exception {
+    TypeToken<YamlProject<T>> token =
+        new TypeToken<YamlProject<T>>() {};
+
+    project = Jenkins.getInstance().createProject(
+        (Class<YamlProject<T>>) token.getRawType(), "project");
+    project.setRestriction(new NoRestriction());
+    YamlLinter.clear();
+  }
+
+  private String readResource(String resourceName) throws Exception {
+    return YamlLinter.read(getClass().getClassLoader().getResourceAsStream(
+        "com/google/jenkins/plugins/dsl/" + resourceName));
+  }
+
+  @Test
+  public void testValid() throws Exception {
+    final JSONObject result =
+        YamlLinter.lint(project, readResource("foo.yaml"));
+
+    assertTrue(result.getBoolean("valid"));
+    assertEquals(0, result.getJSONArray("errors").size());
+
+    // Nothing was created, or written to disk.
+    assertEquals(0, project.getItems().size());
+    assertFalse(new File(project.getRootDir(), "job/lint").exists());
+  }
+
+  @Test
+  public void testTypo() throws Exception {
+    final JSONObject result =
+        YamlLinter.lint(project, readResource("typo.yaml"));
+
+    assertFalse(result.getBoolean("valid"));
+    final JSONObject error = result.getJSONArray("errors").getJSONObject(0);
+    assertEquals("BadTypeException", error.getString("type"));
+    assertThat(error.getString("message"), containsString("Shellz"));
+    assertEquals(0, project.getItems().size());
+  }
+
+  @Test
+  public void testCached() throws Exception {
+    final String yaml = readResource("typo.yaml");
+    final JSONObject first = YamlLinter.lint(project, yaml);
+
+    // Mutating the result we were handed doesn't affect the cache.
+    first.put("valid", true);
+    assertFalse(YamlLinter.lint(project, yaml).getBoolean("valid"));
+  }
+
+  /** Run our CLI command as the given user, with the DSL on stdin. */
+  private int lintCommand(String job, String yaml, ByteArrayOutputStream err,
+      @Nullable String user) throws Exception {
+    final LintYamlCommand command = new LintYamlCommand();
+    if (user != null) {
+      command.setTransportAuth(User.get(user).impersonate());
+    }
+    return command.main(ImmutableList.of(job), Locale.ENGLISH,
+        new ByteArrayInputStream(yaml.getBytes(Charsets.UTF_8)),
+        new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+  }
+
+  @Test
+  public void testCommand_NoSuchJob() throws Exception {
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertEquals(1, lintCommand("missing", readResource("foo.yaml"), err,
+        null /* user */));
+    assertThat(err.toString(), containsString("missing"));
+  }
+
+  @Test
+  public void testCommand_RequiresConfigure() throws Exception {
+    // Linting binds (and so configures) a throwaway child, which users that
+    // may only build the project mustn't be able to do.
+    jenkins.getInstance().setSecurityRealm(
+        jenkins.createDummySecurityRealm());
+    final GlobalMatrixAuthorizationStrategy strategy =
+        new GlobalMatrixAuthorizationStrategy();
+    strategy.add(Jenkins.READ, "builder");
+    strategy.add(Item.READ, "builder");
+    strategy.add(Item.BUILD, "builder");
+    jenkins.getInstance().setAuthorizationStrategy(strategy);
+
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertTrue(0 != lintCommand(project.getFullName(),
+        readResource("foo.yaml"), err, "builder"));
+    assertThat(err.toString(), containsString(Item.CONFIGURE.name));
+    assertEquals(0, project.getItems().size());
+  }
+}
@@ -15,12 +15,17 @@
  */
 package com.google.jenkins.plugins.dsl;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -29,23 +34,38 @@ import static org.mockito.Mockito.when;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.MockFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static com.google.common.io.ByteStreams.copy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.common.reflect.TypeToken;
 import com.google.jenkins.plugins.delegate.DelegateSCM;
+import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
 
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Cause;
 import hudson.model.ItemGroup;
+import hudson.model.Result;
 import hudson.model.TopLevelItem;
 import hudson.model.View;
 import hudson.model.ViewGroupMixIn;
 import hudson.scm.NullSCM;
 import hudson.util.FormValidation;
 
+import jenkins.branch.Branch;
+import jenkins.branch.BranchProperty;
+import jenkins.branch.MultiBranchProject;
 import jenkins.model.Jenkins;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevisionAction;
 
 /**
  * Tests for {@link YamlMultiBranchProject}.
@@ -56,6 +76,9 @@ public class YamlMultiBranchProjectTest<
   @Rule
   public JenkinsRule jenkins = new JenkinsRule();
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   public MockFolder mockFolder;
 
   private YamlMultiBranchProject<T> underTest;
@@ -147,5 +170,58 @@ public class YamlMultiBranchProjectTest<
     verifyNoMoreInteractions(mockViewGroupMixIn);
   }
 
+  @Test
+  public void testBuildAvoidance_AcrossBranches() throws Exception {
+    final File yamlFile = folder.newFile(".dsl.yaml");
+    copy(getClass().getClassLoader().getResourceAsStream(
+        "com/google/jenkins/plugins/dsl/foo.yaml"),
+        Files.newOutputStreamSupplier(yamlFile));
+    final YamlProject<T> master = newBranch("master", yamlFile);
+    final YamlProject<T> pullRequest = newBranch("PR-1", yamlFile);
+
+    // The pull request points at the same commit as its merge target.
+    final YamlBuild<T> first = master.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision("master", "deadbeef")).get();
+    assertEquals(Result.SUCCESS, first.getResult());
+    final AbstractBuild child = master.getChildBuild(first.getNumber());
+    assertNotNull(child);
+
+    final YamlBuild<T> second = pullRequest.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision("PR-1", "deadbeef")).get();
+    assertEquals(Result.SUCCESS, second.getResult());
+
+    // The pull request reuses the result of the master branch's child
+    // build, rather than building one of its own...
+    assertNotNull(second.getAction(YamlBuild.AvoidedAction.class));
+    assertEquals(0, pullRequest.getItems().size());
+
+    // ... which it surfaces as its delegate.
+    assertSame(child, YamlHistoryAction.of(second).getBuild(pullRequest));
+    assertSame(child, pullRequest.getChildBuild(second.getNumber()));
+    assertSame(child.getParent(), pullRequest.getLastProject());
+  }
+
+  /** Creates a branch's project, as branch indexing would. */
+  private YamlProject<T> newBranch(String name, File yamlFile)
+      throws Exception {
+    final YamlProject<T> project = underTest.getProjectFactory().newInstance(
+        new Branch(null /* sourceId */, new SCMHead(name), new NullSCM(),
+            ImmutableList.<BranchProperty>of()));
+    project.setYamlPath(yamlFile.getAbsolutePath());
+    project.setRestriction(new NoRestriction());
+    project.setBuildAvoidance(true);
+
+    final Field items = MultiBranchProject.class.getDeclaredField("items");
+    items.setAccessible(true);
+    ((Map<String, YamlProject<T>>) items.get(underTest)).put(
+        project.getName(), project);
+    return project;
+  }
+
+  private static SCMRevisionAction revision(String branch, String hash) {
+    return new SCMRevisionAction(new AbstractGitSCMSource.SCMRevisionImpl(
+        new SCMHead(branch), hash));
+  }
+
   private static final String BAD_VIEW_NAME = "THIS NAME IS TAKEN";
 }
\ No newline at end of file
@@ -39,6 +39,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
@@ -46,16 +48,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.io.ByteStreams.copy;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.jenkins.plugins.delegate.DelegateSCM;
 import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
 import com.google.jenkins.plugins.dsl.restrict.PluginBlacklist;
 import com.google.jenkins.plugins.storage.GoogleCloudStorageUploader;
@@ -63,19 +69,31 @@ import com.google.jenkins.plugins.storage.StdoutUpload;
 
 import hudson.PluginManager;
 import hudson.PluginWrapper;
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Action;
 import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Executor;
 import hudson.model.FreeStyleProject;
+import hudson.model.InterruptedBuildAction;
+import hudson.model.Item;
+import hudson.model.Items;
 import hudson.model.ParametersAction;
 import hudson.model.Queue;
 import hudson.model.Result;
 import hudson.model.Run;
+import hudson.model.RunAction;
 import hudson.model.StringParameterValue;
 import hudson.model.TopLevelItem;
 import hudson.model.View;
 import hudson.scm.NullSCM;
 
 import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevisionAction;
 
 import net.sf.json.JSONObject;
 
@@ -154,6 +172,55 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
     assertEquals(1, action.getBuild(underTest).getNumber());
   }
 
+  @Test
+  public void testLoad_LegacyProjectsField() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+    final String childName = YamlHistoryAction.of(build)
+        .getProject(underTest).getName();
+
+    // Older versions serialized the map of children into config.xml.
+    final File config = new File(underTest.getRootDir(), "config.xml");
+    final String xml = Files.toString(config, UTF_8);
+    assertFalse(xml.contains("<projects"));
+    Files.write(xml.replaceFirst("(<yamlPath>)",
+        "<projects class=\"hashmap\"/>\n  $1"), config, UTF_8);
+
+    final YamlProject<T> reloaded = (YamlProject<T>) Items.load(
+        Jenkins.getInstance(), underTest.getRootDir());
+    assertEquals(1, reloaded.getItems().size());
+    assertNotNull(reloaded.getItem(childName));
+  }
+
+  @Test
+  public void testLoad_NextVersionAfterNewestChild() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    final AbstractProject older = underTest.getLastProject();
+    writeResourceToFile("bar.yaml");
+    build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    assertEquals("v0001", underTest.getLastProject().getDisplayName());
+    older.delete();
+
+    // Drop the persisted counter, as though we had been saved before it
+    // was tracked (or before reserving the newest child's version).  Only
+    // one child remains, but its version is v0001.
+    final File config = new File(underTest.getRootDir(), "config.xml");
+    final String xml = Files.toString(config, UTF_8);
+    assertTrue(xml.contains("<nextVersion>"));
+    Files.write(xml.replaceFirst("<nextVersion>\\d+</nextVersion>", ""),
+        config, UTF_8);
+
+    final YamlProject<T> reloaded = (YamlProject<T>) Items.load(
+        Jenkins.getInstance(), underTest.getRootDir());
+    assertEquals(1, reloaded.getItems().size());
+    assertEquals(2, reloaded.peekNextVersion());
+  }
+
   @Test
   public void testSimpleWithVerboseLogging() throws Exception {
     writeResourceToFile("foo.yaml");
@@ -267,6 +334,48 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
     assertEquals(Result.ABORTED, build.getResult());
   }
 
+  @Test
+  public void testParentAbortCancelsChild() throws Exception {
+    writeResourceToFile("label.yaml");
+
+    // Make it so that any scheduled inner builds cannot make
+    // progress, so that they are still queued when we abort.
+    jenkins.jenkins.setNumExecutors(0);
+    jenkins.jenkins.setLabelString("NOT_THE_DROIDS_YOU_ARE_LOOKING_FOR");
+
+    Future<YamlBuild<T>> outerBuild = underTest.scheduleBuild2(0);
+
+    // Wait for the scheduled child job to show up in the queue.
+    Queue.Item childItem = null;
+    for (int i = 0; i < 50 && childItem == null; ++i) {
+      for (final Queue.Item item : Queue.getInstance().getItems()) {
+        if (item.task != underTest) {
+          childItem = item;
+        }
+      }
+      if (childItem == null) {
+        Uninterruptibles.sleepUninterruptibly(1, SECONDS);
+      }
+    }
+    assertNotNull(childItem);
+
+    // Abort the parent build.
+    final YamlBuild<T> running = underTest.getLastBuild();
+    assertTrue(running.isBuilding());
+    Executor.of(running).interrupt();
+
+    YamlBuild build = outerBuild.get(10, SECONDS);
+    dumpLog(build);
+    assertEquals(Result.ABORTED, build.getResult());
+
+    // The child's queue item should have been cancelled along with it.
+    Queue.Item newItem = Queue.getInstance().getItem(childItem.getId());
+    assertThat(newItem, instanceOf(Queue.LeftItem.class));
+    assertTrue(((Queue.LeftItem) newItem).isCancelled());
+    assertThat(CharStreams.toString(new InputStreamReader(
+        build.getLogInputStream())), containsString("Aborted"));
+  }
+
   @Test
   public void testDisallowedNullScm() throws Exception {
     YamlProject.DescriptorImpl descriptor =
@@ -323,6 +432,226 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
     assertNotNull(build.getAction(hudson.tasks.junit.TestResultAction.class));
   }
 
+  @Test
+  public void testActionPromotion_Cached() throws Exception {
+    writeResourceToFile("junit.yaml");
+
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+
+    // The merged actions are stable across calls, and mutating the list we
+    // are handed doesn't affect subsequent calls.
+    List<Action> actions = build.getActions();
+    assertEquals(actions, build.getActions());
+    actions.clear();
+    assertNotNull(build.getAction(hudson.tasks.junit.TestResultAction.class));
+
+    // Adding an action lands on the build itself, and invalidates the cache.
+    CauseAction cause = new CauseAction(new Cause.UserIdCause());
+    build.addAction(cause);
+    assertTrue(build.getRawActions().contains(cause));
+    assertTrue(build.getActions().contains(cause));
+
+    // The project delegates to the child the build ran.
+    assertSame(YamlHistoryAction.of(build).getProject(underTest),
+        underTest.getLastProject());
+    assertEquals(underTest.getLastProject().getActions(),
+        underTest.getActions());
+  }
+
+  @Test
+  public void testBuildIndex() throws Exception {
+    writeResourceToFile("junit.yaml");
+
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+
+    // The index maps the build to its child build without loading either.
+    BuildIndex.Record record =
+        underTest.getBuildIndex().get(build.getNumber());
+    assertNotNull(record);
+    assertEquals(underTest.getLastProject().getName(),
+        record.getChildName());
+    assertEquals(Result.SUCCESS, record.getResult());
+    assertSame(YamlHistoryAction.of(build).getBuild(underTest),
+        underTest.getChildBuild(build.getNumber()));
+    assertEquals(ImmutableList.of(build.getNumber()),
+        numbers(underTest.getChildBuilds()));
+  }
+
+  @Test
+  public void testAddAction_Attached() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+
+    // Actions are told of the build they were added to, as Run would.
+    final RunAction2 action = mock(RunAction2.class);
+    build.addAction(action);
+    verify(action).onAttached(build);
+    final RunAction legacyAction = mock(RunAction.class);
+    build.addAction(legacyAction);
+    verify(legacyAction).onAttached();
+    assertTrue(build.getRawActions().contains(legacyAction));
+  }
+
+  @Test
+  public void testChildRecord_Cached() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+
+    // Once found, the build holds on to its record rather than rescanning
+    // the index.
+    final BuildIndex.Record record = build.getChildRecord();
+    assertNotNull(record);
+    assertSame(record, build.getChildRecord());
+  }
+
+  @Test
+  public void testBuildIndex_BuildDeleted() throws Exception {
+    writeResourceToFile("foo.yaml");
+
+    YamlBuild first = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, first.getResult());
+    YamlBuild second = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, second.getResult());
+
+    // Deleting a build drops its record from the index.
+    first.delete();
+    assertNull(underTest.getBuildIndex().get(first.getNumber()));
+    assertEquals(ImmutableList.of(second.getNumber()),
+        numbers(underTest.getChildBuilds()));
+  }
+
+  @Test
+  public void testBuildIndex_Renamed() throws Exception {
+    writeResourceToFile("junit.yaml");
+
+    YamlBuild first = underTest.scheduleBuild2(0).get();
+    assertNotNull(underTest.getBuildIndex().get(first.getNumber()));
+
+    // The index moves along with the project.
+    underTest.renameTo("renamed");
+    YamlBuild second = underTest.scheduleBuild2(0).get();
+    dumpLog(second);
+    assertEquals(ImmutableList.of(second.getNumber(), first.getNumber()),
+        numbers(underTest.getChildBuilds()));
+  }
+
+  private static List<Integer> numbers(List<BuildIndex.Record> records) {
+    final List<Integer> numbers = Lists.newArrayList();
+    for (BuildIndex.Record record : records) {
+      numbers.add(record.getNumber());
+    }
+    return numbers;
+  }
+
+  @Test
+  public void testActionPromotion_ChildDeleted() throws Exception {
+    writeResourceToFile("junit.yaml");
+
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    dumpLog(build);
+    assertEquals(Result.SUCCESS, build.getResult());
+    assertNotNull(build.getAction(hudson.tasks.junit.TestResultAction.class));
+
+    // Once the child build is gone, we stop surfacing its actions.
+    YamlHistoryAction.of(build).getBuild(underTest).delete();
+    assertNull(build.getAction(hudson.tasks.junit.TestResultAction.class));
+  }
+
+  @Test
+  public void testBuildAvoidance_NoRevision() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setBuildAvoidance(true);
+
+    // Without a source revision there is nothing to key avoidance on, so
+    // each build delegates to a build of its child.
+    YamlBuild first = underTest.scheduleBuild2(0).get();
+    dumpLog(first);
+    assertEquals(Result.SUCCESS, first.getResult());
+    YamlBuild second = underTest.scheduleBuild2(0).get();
+    dumpLog(second);
+    assertEquals(Result.SUCCESS, second.getResult());
+
+    assertNull(second.getAction(YamlBuild.AvoidedAction.class));
+    assertNotSame(underTest.getChildBuild(first.getNumber()),
+        underTest.getChildBuild(second.getNumber()));
+  }
+
+  @Test
+  public void testBuildAvoidance_Cached() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setBuildAvoidance(true);
+
+    final SCMRevisionAction revision = new SCMRevisionAction(
+        new AbstractGitSCMSource.SCMRevisionImpl(
+            new SCMHead("master"), "deadbeef"));
+    YamlBuild first = underTest.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision).get();
+    dumpLog(first);
+    assertEquals(Result.SUCCESS, first.getResult());
+    assertNull(first.getAction(YamlBuild.AvoidedAction.class));
+    final AbstractBuild child = underTest.getChildBuild(first.getNumber());
+    assertNotNull(child);
+
+    // Building the same revision of the same DSL again reuses the result of
+    // the first build's child, rather than building it again.
+    YamlBuild second = underTest.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision).get();
+    dumpLog(second);
+    assertEquals(Result.SUCCESS, second.getResult());
+
+    final YamlBuild.AvoidedAction avoided =
+        second.getAction(YamlBuild.AvoidedAction.class);
+    assertNotNull(avoided);
+    assertEquals(child.getUrl(), avoided.getUrl());
+
+    final YamlHistoryAction history = YamlHistoryAction.of(second);
+    assertNotNull(history);
+    assertSame(child, history.getBuild(underTest));
+    assertSame(child, underTest.getChildBuild(second.getNumber()));
+    assertSame(child.getParent(), underTest.getLastProject());
+
+    // No new child build was created.
+    assertEquals(1, underTest.getItems().size());
+    assertSame(child, child.getParent().getLastBuild());
+  }
+
+  @Test
+  public void testBuildAvoidance_Renamed() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setBuildAvoidance(true);
+
+    final SCMRevisionAction revision = new SCMRevisionAction(
+        new AbstractGitSCMSource.SCMRevisionImpl(
+            new SCMHead("master"), "deadbeef"));
+    YamlBuild first = underTest.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision).get();
+    dumpLog(first);
+    assertEquals(Result.SUCCESS, first.getResult());
+    final AbstractBuild child = underTest.getChildBuild(first.getNumber());
+    assertNotNull(child);
+
+    // The cache moves along with the project, and keeps being written there.
+    final File oldRootDir = underTest.getRootDir();
+    underTest.renameTo("renamed");
+    assertTrue(underTest.getAvoidanceCache().isIn(underTest.getRootDir()));
+    YamlBuild second = underTest.scheduleBuild2(0,
+        new Cause.UserIdCause(), revision).get();
+    dumpLog(second);
+    assertEquals(Result.SUCCESS, second.getResult());
+    assertNotNull(second.getAction(YamlBuild.AvoidedAction.class));
+    assertSame(child, underTest.getChildBuild(second.getNumber()));
+    assertTrue(new File(underTest.getRootDir(), "avoidance.xml").exists());
+    assertFalse(oldRootDir.exists());
+  }
+
   @Test
   public void testNoChange() throws Exception {
     writeResourceToFile("foo.yaml");
@@ -530,6 +859,9 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
         build.getLogInputStream())), allOf(
             containsString("BadTypeException"),
             containsString("Shellz")));
+    // We rejected the DSL before creating a child for it.
+    assertEquals(0, underTest.getItems().size());
+    assertEquals(0, underTest.peekNextVersion());
   }
 
   @Test
@@ -609,11 +941,6 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
   @Mock
   private T mockItem;
 
-  @Test(expected = UnsupportedOperationException.class)
-  public void testUnsupportedOperation_onDeleted() throws Exception {
-    underTest.onDeleted(mockItem);
-  }
-
   @Test(expected = UnsupportedOperationException.class)
   public void testUnsupportedOperation_onRenamed() throws Exception {
     underTest.onRenamed(mockItem, "old", "new");
@@ -648,6 +975,296 @@ public class YamlProjectTest<T extends AbstractProject & TopLevelItem> {
     // Check that the parent of the last build is our "last project"
     action = YamlHistoryAction.of(build);
     assertEquals(action.getProject(underTest), underTest.getLastProject());
+
+    // The paged history lists the newest version first.
+    assertEquals(2, underTest.getVersionIndex().size());
+    assertEquals(Lists.reverse(ImmutableList.copyOf(underTest.getItems())),
+        view.getItems(0));
+    VersionIndex.Entry newest =
+        underTest.getVersionIndex().getEntries(0, 1).get(0);
+    assertEquals(underTest.getLastProject().getName(), newest.getName());
+    assertEquals(Result.SUCCESS, newest.getLastResult());
+  }
+
+  @Test
+  public void testVersionIndex_ChildDeleted() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    final AbstractProject older = underTest.getLastProject();
+    writeResourceToFile("bar.yaml");
+    build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    assertEquals(2, underTest.getVersionIndex().size());
+
+    // Deleting a version drops it from both our children and our history.
+    older.delete();
+    assertEquals(1, underTest.getItems().size());
+    assertNull(underTest.getItem(older.getName()));
+    assertEquals(1, underTest.getVersionIndex().size());
+    assertEquals(underTest.getLastProject().getName(),
+        underTest.getVersionIndex().getEntries(0, 1).get(0).getName());
+  }
+
+  @Test
+  public void testVersionIndex_Renamed() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    assertEquals(1, underTest.getVersionIndex().size());
+
+    // The index moves along with the project, and keeps being written there.
+    underTest.renameTo("renamed");
+    writeResourceToFile("bar.yaml");
+    build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    assertEquals(2, underTest.getVersionIndex().size());
+    assertTrue(underTest.getVersionIndex().isIn(underTest.getRootDir()));
+    assertTrue(new File(underTest.getRootDir(), "versions.xml").exists());
+  }
+
+  @Test
+  public void testVersionIndex_RebuiltNewestFirst() throws Exception {
+    writeResourceToFile("foo.yaml");
+    YamlBuild build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    writeResourceToFile("bar.yaml");
+    build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+
+    // Rebuild the index from the children themselves, which orders them by
+    // version rather than by name, and dates them by their first build.
+    assertTrue(new File(underTest.getRootDir(), "versions.xml").delete());
+    final VersionIndex index = VersionIndex.load(underTest);
+    final List<VersionIndex.Entry> entries = index.getEntries(0, 2);
+    assertEquals(underTest.getLastProject().getName(),
+        entries.get(0).getName());
+    assertEquals(underTest.getLastProject().getFirstBuild().getTimeInMillis(),
+        entries.get(0).getCreationTime());
+  }
+
+  @Test
+  public void testConcurrentBuildsShareChild() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setConcurrentBuild(true);
+
+    // Distinct parameters keep the queue from folding our two builds.
+    final Future<YamlBuild<T>> first = underTest.scheduleBuild2(0,
+        new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "1")));
+    final Future<YamlBuild<T>> second = underTest.scheduleBuild2(0,
+        new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "2")));
+
+    final YamlBuild firstBuild = first.get();
+    final YamlBuild secondBuild = second.get();
+    dumpLog(firstBuild);
+    dumpLog(secondBuild);
+    assertEquals(Result.SUCCESS, firstBuild.getResult());
+    assertEquals(Result.SUCCESS, secondBuild.getResult());
+
+    // Both builds share a single child, but each gets its own execution.
+    assertEquals(1, underTest.getItems().size());
+    final YamlHistoryAction firstAction = YamlHistoryAction.of(firstBuild);
+    final YamlHistoryAction secondAction = YamlHistoryAction.of(secondBuild);
+    assertSame(firstAction.getProject(underTest),
+        secondAction.getProject(underTest));
+    assertTrue(firstAction.getProject(underTest).isConcurrentBuild());
+    assertNotSame(firstAction.getBuild(underTest),
+        secondAction.getBuild(underTest));
+
+    // A new DSL gets the next version, as a new child.
+    writeResourceToFile("bar.yaml");
+    final YamlBuild thirdBuild = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, thirdBuild.getResult());
+    assertEquals(2, underTest.getItems().size());
+    assertEquals("v0001", YamlHistoryAction.of(thirdBuild)
+        .getProject(underTest).getDisplayName());
+  }
+
+  @Test
+  public void testAlternatingDSLs_LinearHistory() throws Exception {
+    writeResourceToFile("foo.yaml");
+    final YamlBuild firstBuild = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, firstBuild.getResult());
+
+    writeResourceToFile("bar.yaml");
+    final YamlBuild secondBuild = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, secondBuild.getResult());
+
+    // Returning to the first DSL doesn't resurrect its older child, which
+    // was bound under whatever restrictions applied back then.
+    writeResourceToFile("foo.yaml");
+    final YamlBuild thirdBuild = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, thirdBuild.getResult());
+    assertEquals(3, underTest.getItems().size());
+    final AbstractProject first =
+        YamlHistoryAction.of(firstBuild).getProject(underTest);
+    final AbstractProject third =
+        YamlHistoryAction.of(thirdBuild).getProject(underTest);
+    assertNotSame(first, third);
+    assertEquals("v0002", third.getDisplayName());
+    assertSame(third, underTest.getLastProject());
+  }
+
+  @Test
+  public void testGetVersion() throws Exception {
+    final Item newer = mock(Item.class);
+    when(newer.getName()).thenReturn("v10000-abc");
+    final Item older = mock(Item.class);
+    when(older.getName()).thenReturn("v9999-abc");
+    final Item other = mock(Item.class);
+    when(other.getName()).thenReturn("foo");
+
+    assertEquals(10000, YamlProject.getVersion(newer));
+    assertEquals(9999, YamlProject.getVersion(older));
+    assertEquals(-1, YamlProject.getVersion(other));
+  }
+
+  @Test
+  public void testLatestWins_CancelsQueuedBuilds() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setLatestWins(true);
+
+    // Use a long quiet period, so that both builds sit in the queue.
+    underTest.scheduleBuild2(1000, new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "1")));
+    final Queue.Item first = Queue.getInstance().getItem(underTest);
+    underTest.scheduleBuild2(1000, new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "2")));
+    final Queue.Item second = Queue.getInstance().getItem(underTest);
+
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNotSame(first, second);
+    assertEquals(1, Queue.getInstance().getItems(underTest).size());
+
+    // The older item left the queue through the usual cancellation path.
+    final Queue.Item left = Queue.getInstance().getItem(first.getId());
+    assertThat(left, instanceOf(Queue.LeftItem.class));
+    assertTrue(((Queue.LeftItem) left).isCancelled());
+
+    // The newer item builds on behalf of the older one too.
+    assertEquals(2, second.getAction(CauseAction.class).getCauses().size());
+
+    assertTrue(Queue.getInstance().cancel(second));
+  }
+
+  /** Vetoes the scheduling of items with a parameter "veto". */
+  @TestExtension("testLatestWins_VetoedSupersedesNothing")
+  public static class Veto extends Queue.QueueDecisionHandler {
+    /** {@inheritDoc} */
+    @Override
+    public boolean shouldSchedule(Queue.Task task, List<Action> actions) {
+      for (Action action : actions) {
+        if (action instanceof ParametersAction
+            && ((ParametersAction) action).getParameter("veto") != null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @Test
+  public void testLatestWins_VetoedSupersedesNothing() throws Exception {
+    writeResourceToFile("foo.yaml");
+    underTest.setLatestWins(true);
+
+    underTest.scheduleBuild2(1000, new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "1")));
+    final Queue.Item first = Queue.getInstance().getItem(underTest);
+    assertNotNull(first);
+
+    // An item that is never queued supersedes nothing.
+    assertNull(underTest.scheduleBuild2(1000, new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("veto", "true"))));
+    assertSame(first, Queue.getInstance().getItem(underTest));
+
+    assertTrue(Queue.getInstance().cancel(first));
+  }
+
+  @Test
+  public void testLatestWins_AbortsRunningBuild() throws Exception {
+    writeResourceToFile("label.yaml");
+    underTest.setLatestWins(true);
+    assertFalse(underTest.isConcurrentBuild());
+
+    // Make it so that any scheduled inner builds cannot make
+    // progress, so that the first build is still running when we schedule
+    // the second.
+    jenkins.jenkins.setNumExecutors(0);
+    jenkins.jenkins.setLabelString("NOT_THE_DROIDS_YOU_ARE_LOOKING_FOR");
+
+    final Future<YamlBuild<T>> first = underTest.scheduleBuild2(0,
+        new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "1")));
+    for (int i = 0; i < 50 && (underTest.getLastBuild() == null
+             || !underTest.getLastBuild().isBuilding()); ++i) {
+      Uninterruptibles.sleepUninterruptibly(1, SECONDS);
+    }
+    final YamlBuild<T> running = underTest.getLastBuild();
+    assertTrue(running.isBuilding());
+
+    // Without concurrent builds, the newer build can't start until the
+    // older one finishes, so it must be aborted as the newer is scheduled.
+    final Future<YamlBuild<T>> second = underTest.scheduleBuild2(0,
+        new Cause.LegacyCodeCause(),
+        new ParametersAction(new StringParameterValue("run", "2")));
+
+    final YamlBuild build = first.get(10, SECONDS);
+    dumpLog(build);
+    assertEquals(Result.ABORTED, build.getResult());
+    final InterruptedBuildAction interrupted =
+        build.getAction(InterruptedBuildAction.class);
+    assertNotNull(interrupted);
+    assertThat(interrupted.getCauses().get(0),
+        instanceOf(YamlBuild.SupersededInterruption.class));
+
+    // Clean up the newer build, whose child is just as stuck.
+    for (int i = 0; i < 50 && (underTest.getLastBuild() == running
+             || !underTest.getLastBuild().isBuilding()); ++i) {
+      Uninterruptibles.sleepUninterruptibly(1, SECONDS);
+    }
+    Executor.of(underTest.getLastBuild()).interrupt();
+    assertEquals(Result.ABORTED, second.get(10, SECONDS).getResult());
+  }
+
+  @Test
+  public void testSiblingClonesBoundChild() throws Exception {
+    writeResourceToFile("foo.yaml");
+    BoundProjectCache.clear();
+
+    TypeToken<YamlProject<T>> token =
+        new TypeToken<YamlProject<T>>() {};
+    final YamlProject<T> sibling = Jenkins.getInstance().createProject(
+        (Class<YamlProject<T>>) token.getRawType(), "sibling");
+    sibling.setYamlPath(yamlFile.getAbsolutePath());
+    sibling.setRestriction(new NoRestriction());
+
+    final YamlBuild build = underTest.scheduleBuild2(0).get();
+    assertEquals(Result.SUCCESS, build.getResult());
+    final AbstractProject child =
+        YamlHistoryAction.of(build).getProject(underTest);
+    final String hash = child.getName().substring(
+        child.getName().lastIndexOf('-') + 1);
+    assertNotNull(BoundProjectCache.get(sibling, hash));
+
+    final YamlBuild siblingBuild = sibling.scheduleBuild2(0).get();
+    dumpLog(siblingBuild);
+    assertEquals(Result.SUCCESS, siblingBuild.getResult());
+    assertThat(CharStreams.toString(new InputStreamReader(
+        siblingBuild.getLogInputStream())), containsString("Hello World"));
+
+    // The clone is its own child, with its own name and source control.
+    final AbstractProject clone =
+        YamlHistoryAction.of(siblingBuild).getProject(sibling);
+    assertNotSame(child, clone);
+    assertSame(sibling, clone.getParent());
+    assertEquals(child.getName(), clone.getName());
+    assertEquals("v0000", clone.getDisplayName());
+    assertThat(clone.getScm(), instanceOf(DelegateSCM.class));
+    assertNotSame(child.getScm(), clone.getScm());
   }
 
   private void writeResourceToFile(String resourceName) throws IOException {
@@ -18,6 +18,12 @@ package com.google.jenkins.plugins.dsl.restrict;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Before;
@@ -28,6 +34,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.google.common.collect.ImmutableList;
+import com.google.jenkins.plugins.dsl.YamlProject;
 
 import hudson.PluginManager;
 import hudson.PluginWrapper;
@@ -143,6 +150,110 @@ public class PluginRestrictionTest {
     blacklist.getClassLoader(fakeProject).loadClass(GitSCM.class.getName());
   }
 
+  @Test
+  public void testVerdictsCached() throws Exception {
+    setup(ImmutableList.of("git-plugin"));
+    when(manager.whichPlugin(GitSCM.class)).thenReturn(plugin);
+    when(plugin.getShortName()).thenReturn("git-plugin");
+
+    final ClassLoader loader = whitelist.getClassLoader(fakeProject);
+    assertSame(loader, whitelist.getClassLoader(fakeProject));
+
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(GitSCM.class, loader.loadClass(GitSCM.class.getName()));
+    }
+    // We only consult the plugin manager for the first load.
+    verify(manager, times(1)).whichPlugin(GitSCM.class);
+  }
+
+  @Test
+  public void testVerdictsFlushedOnNewPlugins() throws Exception {
+    setup(ImmutableList.of("git-plugin"));
+    when(manager.whichPlugin(GitSCM.class)).thenReturn(plugin);
+    when(plugin.getShortName()).thenReturn("git-plugin");
+
+    final ClassLoader loader = whitelist.getClassLoader(fakeProject);
+    assertEquals(GitSCM.class, loader.loadClass(GitSCM.class.getName()));
+
+    // Loading a plugin starts a new generation, after which we consult the
+    // plugin manager afresh.
+    final List<PluginWrapper> plugins =
+        jenkins.jenkins.getPluginManager().getPlugins();
+    final PluginWrapper other = mock(PluginWrapper.class);
+    plugins.add(other);
+    try {
+      when(plugin.getShortName()).thenReturn("other-plugin");
+      try {
+        loader.loadClass(GitSCM.class.getName());
+        fail("expected exception");
+      } catch (RestrictedTypeException e) {
+        // Expected
+      }
+      verify(manager, times(2)).whichPlugin(GitSCM.class);
+    } finally {
+      plugins.remove(other);
+    }
+  }
+
+  /**
+   * A whitelist that hosts our manager mock in a transient field, so that
+   * the project carrying it may be saved.
+   */
+  private static class CustomWhitelist extends PluginWhitelist {
+    public CustomWhitelist(List<String> plugins, PluginManager manager) {
+      super(plugins);
+      this.manager = manager;
+    }
+
+    @Override
+    public PluginManager getPluginManager() {
+      return manager;
+    }
+    private transient PluginManager manager;
+  }
+
+  @Test
+  public void testChainRebuiltOnReconfiguration() throws Exception {
+    setup(ImmutableList.of("other-plugin"));
+    when(manager.whichPlugin(GitSCM.class)).thenReturn(plugin);
+    when(plugin.getShortName()).thenReturn("git-plugin");
+
+    // Nest our project within a restricted project.
+    final YamlProject outer =
+        jenkins.jenkins.createProject(YamlProject.class, "outer");
+    outer.setRestriction(new CustomWhitelist(
+        ImmutableList.of("git-plugin"), manager));
+    final AbstractProject child = mock(AbstractProject.class);
+    when(child.getParent()).thenReturn(outer);
+    final RestrictedProject project = new RestrictedProject<AbstractProject>() {
+      @Override
+      public AbstractProject asProject() {
+        return child;
+      }
+
+      @Override
+      public AbstractRestriction getRestriction() {
+        return blacklist;
+      }
+    };
+
+    final ClassLoader loader = blacklist.getClassLoader(project);
+    assertSame(loader, blacklist.getClassLoader(project));
+    assertEquals(GitSCM.class, loader.loadClass(GitSCM.class.getName()));
+
+    // Tightening the outer restriction rebuilds the chain.
+    outer.setRestriction(new CustomWhitelist(
+        ImmutableList.of("other-plugin"), manager));
+    final ClassLoader rebuilt = blacklist.getClassLoader(project);
+    assertNotSame(loader, rebuilt);
+    try {
+      rebuilt.loadClass(GitSCM.class.getName());
+      fail("expected exception");
+    } catch (RestrictedTypeException e) {
+      // Expected
+    }
+  }
+
   @Test(expected = BadTypeException.class)
   public void trulyUnknownClass() throws Exception {
     setup(ImmutableList.of("git-plugin"));
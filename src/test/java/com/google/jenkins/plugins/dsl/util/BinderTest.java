@@ -15,6 +15,7 @@
  */
 package com.google.jenkins.plugins.dsl.util;
 
+import java.lang.ref.WeakReference;
 import java.util.List;
 
 import static org.hamcrest.Matchers.allOf;
@@ -22,6 +23,8 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -38,6 +41,7 @@ import com.google.jenkins.plugins.dsl.restrict.AbstractRestriction;
 import com.google.jenkins.plugins.dsl.restrict.BadTypeException;
 import com.google.jenkins.plugins.dsl.restrict.NoRestriction;
 import com.google.jenkins.plugins.dsl.restrict.RestrictedProject;
+import com.google.jenkins.plugins.dsl.restrict.RestrictedTypeException;
 
 import hudson.matrix.MatrixProject;
 import hudson.matrix.TextAxis;
@@ -124,6 +128,49 @@ public class BinderTest {
     assertNotNull(descriptor);
   }
 
+  @Test
+  public void testGetDescriptor_Cached() throws Exception {
+    final Binder.Default other =
+        new Binder.Default(underTest.getClassLoader());
+
+    Descriptor descriptor = underTest.getDescriptor(Shell.class.getName());
+    assertSame(descriptor, other.getDescriptor(Shell.class.getName()));
+    assertSame(underTest.getStapler(), other.getStapler());
+  }
+
+  @Test
+  public void testGetDescriptor_DoesNotPinClassLoader() throws Exception {
+    ClassLoader loader = new ClassLoader(underTest.getClassLoader()) {};
+    Binder.Default binder = new Binder.Default(loader);
+    assertNotNull(binder.getDescriptor(Shell.class.getName()));
+    assertNotNull(binder.getStapler());
+
+    // The state cached for the class loader mustn't keep it alive.
+    final WeakReference<ClassLoader> ref =
+        new WeakReference<ClassLoader>(loader);
+    loader = null;
+    binder = null;
+    for (int i = 0; i < 50 && ref.get() != null; ++i) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    assertNull(ref.get());
+  }
+
+  @Test
+  public void testGetDescriptor_FailureNotCached() throws Exception {
+    final String badClass = "hudson.tasks.Shellzz";
+
+    for (int i = 0; i < 2; ++i) {
+      try {
+        underTest.getDescriptor(badClass);
+        fail("expected exception");
+      } catch (BadTypeException e) {
+        assertThat(e.getMessage(), containsString(badClass));
+      }
+    }
+  }
+
   @Test
   public void testGetDescriptor_Typo() throws Exception {
     final String badClass = "hudson.tasks.Shellz";
@@ -239,6 +286,54 @@ public class BinderTest {
     assertEquals(2, ((MatrixProject) job).getAxes().size());
   }
 
+  @Test
+  public void testBindJob_MatrixWithRestrictedBuilder() throws Exception {
+    final ClassLoader inner = underTest.getClassLoader();
+    final Binder.Default binder = new Binder.Default(new ClassLoader() {
+        @Override
+        public Class loadClass(String name) throws ClassNotFoundException {
+          if (name.equals(Shell.class.getName())) {
+            throw new RestrictedTypeException(name);
+          }
+          return inner.loadClass(name);
+        }
+      });
+    JSONObject json = (JSONObject) JSONSerializer.toJSON(EMPTY_JSON);
+    json.put("$class", MatrixProject.class.getName());
+    json.put("axis", (JSONArray) JSONSerializer.toJSON(AXES_JSON));
+    json.put("builder", (JSONArray) JSONSerializer.toJSON(BUILDERS1_JSON));
+
+    try {
+      binder.bindJob(Jenkins.getInstance(), NAME, json);
+      fail("expected exception");
+    } catch (RestrictedTypeException e) {
+      assertThat(e.getMessage(), containsString(Shell.class.getName()));
+    }
+  }
+
+  @Test
+  public void testValidate_WithBuilder() throws Exception {
+    JSONObject json = (JSONObject) JSONSerializer.toJSON(EMPTY_JSON);
+    json.put("builder", (JSONArray) JSONSerializer.toJSON(BUILDERS1_JSON));
+
+    underTest.validate(json);
+  }
+
+  @Test
+  public void testValidate_NestedTypo() throws Exception {
+    final String badClass = "hudson.tasks.Shellz";
+    JSONObject json = (JSONObject) JSONSerializer.toJSON(EMPTY_JSON);
+    json.put("builder", (JSONArray) JSONSerializer.toJSON(
+        "[ { 'stapler-class': '" + badClass + "', 'command': 'ls' } ]"));
+
+    try {
+      underTest.validate(json);
+      fail("expected exception");
+    } catch (BadTypeException e) {
+      assertThat(e.getMessage(), containsString(badClass));
+    }
+  }
+
   @Test
   public void testBindJob_WithBuilder() throws Exception {
     JSONObject json = (JSONObject) JSONSerializer.toJSON(EMPTY_JSON);
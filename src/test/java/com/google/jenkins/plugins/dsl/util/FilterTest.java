@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -76,6 +78,78 @@ public class FilterTest {
             Filter.array((JSONArray) unfilteredObject)).toString();
 
     assertEquals(json, filtered);
+
+    // Pruning in place must produce the same result.
+    final Object pruned = JSONSerializer.toJSON(unfiltered);
+    assertEquals(json, ((pruned instanceof JSONObject) ?
+        Filter.prune((JSONObject) pruned) :
+        Filter.prune((JSONArray) pruned)).toString());
+  }
+
+  @Test
+  public void testLargeMatrixForm() throws Exception {
+    final JSONObject form = largeMatrixForm(200 /* axes values */,
+        100 /* builders */);
+    final String expected = Filter.object(form).toString();
+
+    // Pruning a copy of the form in place yields the same as copying it.
+    final JSONObject owned = JSONObject.fromObject(form);
+    Filter.prune(owned);
+    assertEquals(expected, owned.toString());
+  }
+
+  @Test
+  public void testPrune_OnlyChangedEntries() throws Exception {
+    final String text = new String("text");
+    final JSONObject form = new JSONObject();
+    form.put("text", text);
+    form.put("flag", true);
+    form.put("empty", "");
+
+    // Strings are left in place, other scalars replaced by their text.
+    Filter.prune(form);
+    assertSame(text, form.get("text"));
+    assertEquals("true", form.get("flag"));
+    assertFalse(form.containsKey("empty"));
+  }
+
+  /** Synthesize a form resembling that of a large matrix job. */
+  private JSONObject largeMatrixForm(int values, int builders) {
+    final JSONObject form = new JSONObject();
+    form.put("name", "matrix");
+    form.put("description", "");
+    form.put("stapler-class-bag", "true");
+    form.put("$class", "hudson.matrix.MatrixProject");
+    form.put("stapler-class", "hudson.matrix.MatrixProject");
+
+    final JSONArray axes = new JSONArray();
+    for (int axis = 0; axis < 4; ++axis) {
+      final StringBuilder valueString = new StringBuilder();
+      for (int i = 0; i < values; ++i) {
+        valueString.append("v").append(i).append(' ');
+      }
+      final JSONObject textAxis = new JSONObject();
+      textAxis.put("stapler-class", "hudson.matrix.TextAxis");
+      textAxis.put("name", "axis" + axis);
+      textAxis.put("valueString", valueString.toString());
+      textAxis.put("", new JSONObject());
+      axes.add(textAxis);
+    }
+    form.put("axis", axes);
+
+    final JSONArray builder = new JSONArray();
+    for (int i = 0; i < builders; ++i) {
+      final JSONObject shell = new JSONObject();
+      shell.put("$class", "hudson.tasks.Shell");
+      shell.put("stapler-class", "hudson.tasks.Shell");
+      shell.put("command", "echo " + i);
+      shell.put("unused", "");
+      shell.put("flag", i % 2 == 0);
+      builder.add(shell);
+    }
+    form.put("builder", builder);
+    form.put("scm", new JSONObject());
+    return form;
   }
 
   private String read(InputStream stream) throws IOException {
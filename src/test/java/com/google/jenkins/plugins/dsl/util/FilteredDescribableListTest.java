@@ -0,0 +1,235 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl.util;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.jenkins.plugins.dsl.restrict.RestrictedTypeException;
+
+import hudson.PluginWrapper;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import hudson.model.Saveable;
+import hudson.tasks.BatchFile;
+import hudson.tasks.Builder;
+import hudson.tasks.Shell;
+import hudson.util.DescribableList;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Tests for {@link FilteredDescribableList}.
+ */
+public class FilteredDescribableListTest {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  /** An object with a list of its own, and a nested describable. */
+  private static class Outer implements Saveable {
+    public void save() {}
+
+    private DescribableList<Builder, Descriptor<Builder>> builders;
+
+    private Inner inner = new Inner();
+  }
+
+  /** A nested describable, which binding populates with its own list. */
+  private static class Inner implements Describable<Inner> {
+    public Descriptor<Inner> getDescriptor() {
+      throw new UnsupportedOperationException();
+    }
+
+    private DescribableList<Builder, Descriptor<Builder>> builders =
+        new DescribableList<Builder, Descriptor<Builder>>(Saveable.NOOP);
+  }
+
+  /** Rejects the descriptor of {@link Shell}. */
+  private static final Predicate<Descriptor> NO_SHELL =
+      new Predicate<Descriptor>() {
+        public boolean apply(Descriptor descriptor) {
+          return descriptor.clazz != Shell.class;
+        }
+      };
+
+  /** Counts how often it is applied, and rejects {@link Shell}. */
+  private static class CountingPredicate implements Predicate<Descriptor> {
+    public boolean apply(Descriptor descriptor) {
+      ++count;
+      return NO_SHELL.apply(descriptor);
+    }
+
+    private int count;
+  }
+
+  private static List<Descriptor<Builder>> builderDescriptors() {
+    return ImmutableList.<Descriptor<Builder>>of(
+        Jenkins.getInstance().getDescriptorOrDie(Shell.class),
+        Jenkins.getInstance().getDescriptorOrDie(BatchFile.class));
+  }
+
+  @Test
+  public void testApplyFilter_Memoized() throws Exception {
+    final CountingPredicate filter = new CountingPredicate();
+    final FilteredDescribableList<Builder, Descriptor<Builder>> first =
+        new FilteredDescribableList(filter, Saveable.NOOP);
+    final FilteredDescribableList<Builder, Descriptor<Builder>> second =
+        new FilteredDescribableList(filter, Saveable.NOOP);
+
+    final List<Descriptor<Builder>> filtered =
+        first.applyFilter(builderDescriptors());
+    assertEquals(2, filter.count);
+    assertThat(filtered.get(0),
+        instanceOf(FilteredDescribableList.PoisonPillDescriptor.class));
+    assertSame(builderDescriptors().get(1), filtered.get(1));
+
+    // Lists sharing the filter reuse the result, without re-filtering.
+    assertSame(filtered, second.applyFilter(builderDescriptors()));
+    assertEquals(2, filter.count);
+  }
+
+  @Test
+  public void testApplyFilter_SharedPoisonPill() throws Exception {
+    final List<Descriptor<Builder>> first =
+        new FilteredDescribableList(new CountingPredicate(), Saveable.NOOP)
+        .applyFilter(builderDescriptors());
+    final List<Descriptor<Builder>> second =
+        new FilteredDescribableList(new CountingPredicate(), Saveable.NOOP)
+        .applyFilter(builderDescriptors());
+
+    // Distinct filters compute their own lists, but share the poison pill.
+    assertNotSame(first, second);
+    assertSame(first.get(0), second.get(0));
+    assertSame(FilteredDescribableList.POISON_PILLS.getUnchecked(Shell.class),
+        first.get(0));
+  }
+
+  @Test
+  public void testResolve_Cached() throws Exception {
+    final FilteredDescribableList.Resolution found =
+        FilteredDescribableList.resolve(Shell.class.getName());
+    assertTrue(found.found);
+    assertSame(Jenkins.getInstance().getDescriptorOrDie(Shell.class),
+        found.descriptor);
+    assertSame(found, FilteredDescribableList.resolve(Shell.class.getName()));
+
+    // Failures to resolve are remembered as well.
+    final FilteredDescribableList.Resolution missing =
+        FilteredDescribableList.resolve("hudson.tasks.Shellz");
+    assertFalse(missing.found);
+    assertSame(missing,
+        FilteredDescribableList.resolve("hudson.tasks.Shellz"));
+  }
+
+  @Test
+  public void testResolve_FlushedOnNewPlugins() throws Exception {
+    final FilteredDescribableList.Resolution before =
+        FilteredDescribableList.resolve(Shell.class.getName());
+
+    // Loading a plugin starts a new generation, which flushes the cache.
+    final List<PluginWrapper> plugins =
+        Jenkins.getInstance().getPluginManager().getPlugins();
+    final PluginWrapper plugin = mock(PluginWrapper.class);
+    plugins.add(plugin);
+    try {
+      final FilteredDescribableList.Resolution after =
+          FilteredDescribableList.resolve(Shell.class.getName());
+      assertNotSame(before, after);
+      assertSame(before.descriptor, after.descriptor);
+    } finally {
+      plugins.remove(plugin);
+    }
+  }
+
+  @Test
+  public void testRewrite_OwnAndNestedLists() throws Exception {
+    final Outer outer = new Outer();
+
+    FilteredDescribableList.rewrite(outer, NO_SHELL);
+
+    assertThat(outer.builders, instanceOf(FilteredDescribableList.class));
+    assertThat(outer.inner.builders,
+        instanceOf(FilteredDescribableList.class));
+  }
+
+  @Test
+  public void testCheck_AfterBinding() throws Exception {
+    final Outer outer = new Outer();
+    final Set<Object> existing =
+        FilteredDescribableList.rewrite(outer, NO_SHELL);
+    final DescribableList bound = outer.builders;
+
+    // Binding replaces the nested describable, along with its list.
+    outer.inner = new Inner();
+    final DescribableList replaced = outer.inner.builders;
+    replaced.add(new Shell("echo hello"));
+
+    try {
+      FilteredDescribableList.check(outer, NO_SHELL, existing);
+      fail("expected exception");
+    } catch (RestrictedTypeException e) {
+      assertThat(e.getMessage(), containsString(Shell.class.getName()));
+    }
+
+    // Checking replaces nothing.
+    assertSame(bound, outer.builders);
+    assertSame(replaced, outer.inner.builders);
+  }
+
+  @Test
+  public void testCheck_AfterBindingAllowed() throws Exception {
+    final Outer outer = new Outer();
+    final Set<Object> existing =
+        FilteredDescribableList.rewrite(outer, Predicates.alwaysTrue());
+
+    outer.inner = new Inner();
+    outer.inner.builders.add(new Shell("echo hello"));
+
+    FilteredDescribableList.check(outer, Predicates.alwaysTrue(), existing);
+    assertEquals(1, outer.inner.builders.size());
+  }
+
+  @Test
+  public void testCheck_SkipsExisting() throws Exception {
+    // Binding didn't create the nested describable, or what it holds.
+    final Outer outer = new Outer();
+    outer.inner.builders.add(new Shell("echo hello"));
+    final Set<Object> existing =
+        FilteredDescribableList.rewrite(outer, NO_SHELL);
+    assertFalse(outer.inner.builders instanceof FilteredDescribableList);
+
+    FilteredDescribableList.check(outer, NO_SHELL, existing);
+    assertEquals(1, outer.inner.builders.size());
+  }
+}
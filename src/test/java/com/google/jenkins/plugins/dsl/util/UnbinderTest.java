@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.jenkins.plugins.dsl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.tasks.Shell;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Tests for {@link Unbinder}.
+ */
+public class UnbinderTest {
+  @Rule
+  public JenkinsRule jenkins = new JenkinsRule();
+
+  /**
+   * Loads our own classes afresh, as though the matrix-project plugin were
+   * not installed.
+   */
+  private static class NoMatrixClassLoader extends ClassLoader {
+    public NoMatrixClassLoader() {
+      super(Unbinder.class.getClassLoader());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (name.startsWith("hudson.matrix.")) {
+        throw new ClassNotFoundException(name);
+      }
+      if (!name.startsWith(Unbinder.class.getPackage().getName() + ".")) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> clazz = findLoadedClass(name);
+      if (clazz == null) {
+        final InputStream in = getParent().getResourceAsStream(
+            name.replace('.', '/') + ".class");
+        if (in == null) {
+          throw new ClassNotFoundException(name);
+        }
+        try {
+          final byte[] bytes = ByteStreams.toByteArray(in);
+          clazz = defineClass(name, bytes, 0, bytes.length);
+        } catch (IOException e) {
+          throw new ClassNotFoundException(name, e);
+        } finally {
+          Closeables.closeQuietly(in);
+        }
+      }
+      if (resolve) {
+        resolveClass(clazz);
+      }
+      return clazz;
+    }
+  }
+
+  @Test
+  public void testUnbind() throws Exception {
+    final FreeStyleProject project = jenkins.createFreeStyleProject("foo");
+    project.getBuildersList().add(new Shell("echo Hello World"));
+
+    final JSONObject json = Unbinder.unbind(project);
+    assertEquals(FreeStyleProject.class.getName(), json.getString("$class"));
+    assertEquals("echo Hello World", json.getJSONArray("builder")
+        .getJSONObject(0).getString("command"));
+  }
+
+  @Test
+  public void testUnbind_Matrix() throws Exception {
+    final MatrixProject project =
+        jenkins.getInstance().createProject(MatrixProject.class, "matrix");
+    project.getAxes().add(new TextAxis("axis", "a b"));
+    project.getBuildersList().add(new Shell("echo Hello World"));
+
+    final JSONObject json = Unbinder.unbind(project);
+    assertEquals("axis", json.getJSONArray("axis")
+        .getJSONObject(0).getString("name"));
+    assertEquals("echo Hello World", json.getJSONArray("builder")
+        .getJSONObject(0).getString("command"));
+  }
+
+  @Test
+  public void testUnbind_WithoutMatrixTypes() throws Exception {
+    final FreeStyleProject project = jenkins.createFreeStyleProject("foo");
+    project.getBuildersList().add(new Shell("echo Hello World"));
+
+    final ClassLoader loader = new NoMatrixClassLoader();
+    try {
+      loader.loadClass(MatrixProject.class.getName());
+      fail("expected the matrix types to be hidden");
+    } catch (ClassNotFoundException e) {
+      // Expected
+    }
+
+    // Unbinding a project that isn't a matrix needn't load the matrix types.
+    final Object json = Class.forName(Unbinder.class.getName(), true, loader)
+        .getMethod("unbind", AbstractProject.class).invoke(null, project);
+    assertThat(json.toString(), containsString("echo Hello World"));
+  }
+}